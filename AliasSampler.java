@@ -0,0 +1,69 @@
+import java.util.random.RandomGenerator;
+
+/** A sampler that uses Walker's alias method (Vose's construction).
+ *  The alias table of a sampling table is built on its first draw and kept with it,
+ *  after which every draw takes O(1) time, regardless of the number of characters.
+ *  Does not draw the same characters as the LinearSampler for a given seed. */
+public class AliasSampler implements Sampler {
+
+    /** Returns a random character from the given sampling table. */
+    public char sample(SamplingTable table, RandomGenerator random) {
+        AliasTable alias = table.aliasTable;
+        if (alias == null) {
+            alias = new AliasTable(table);
+            table.aliasTable = alias;
+        }
+        int column = random.nextInt(alias.threshold.length);
+        if (random.nextInt(table.total) < alias.threshold[column]) return table.chars[column];
+        return table.chars[alias.alias[column]];
+    }
+
+    /** The alias table of one sampling table. Immutable once constructed. */
+    static class AliasTable {
+
+        // column i returns its own character when a draw in [0, total) is below threshold[i]
+        final int[] threshold;
+
+        // otherwise, column i returns the character at index alias[i]
+        final int[] alias;
+
+        /** Builds the alias table of the given sampling table, using integer arithmetic only. */
+        AliasTable(SamplingTable table) {
+            int n = table.getSize();
+            int total = table.total;
+            threshold = new int[n];
+            alias = new int[n];
+            // Scales every count by n, so that the average column holds exactly total
+            long[] scaled = new long[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallSize = 0;
+            int largeSize = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = (long) table.counts[i] * n;
+                if (scaled[i] < total) small[smallSize++] = i;
+                else large[largeSize++] = i;
+            }
+            while (smallSize > 0 && largeSize > 0) {
+                int s = small[--smallSize];
+                int l = large[--largeSize];
+                threshold[s] = (int) scaled[s];
+                alias[s] = l;
+                scaled[l] = scaled[l] + scaled[s] - total;
+                if (scaled[l] < total) small[smallSize++] = l;
+                else large[largeSize++] = l;
+            }
+            // The remaining columns are full
+            while (largeSize > 0) {
+                int l = large[--largeSize];
+                threshold[l] = total;
+                alias[l] = l;
+            }
+            while (smallSize > 0) {
+                int s = small[--smallSize];
+                threshold[s] = total;
+                alias[s] = s;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.random.RandomGenerator;
+
+/** A sampler that binary searches the cumulative probabilities of a table.
+ *  Consumes the same random numbers and returns the same characters as the
+ *  LinearSampler, in O(log n) per draw instead of O(n). */
+public class BinarySearchSampler implements Sampler {
+
+    /** Returns a random character from the given sampling table. */
+    public char sample(SamplingTable table, RandomGenerator random) {
+        double r = random.nextDouble();
+        double[] cp = table.cp;
+        // Finds the first index whose cumulative probability is at least r
+        int low = 0;
+        int high = cp.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cp[mid] < r) low = mid + 1;
+            else high = mid;
+        }
+        return (low < cp.length) ? table.chars[low] : ' ';
+    }
+}
@@ -0,0 +1,9 @@
+/** Represents an operation on a character and its count, such as the successors
+ *  of a window (see List.forEachCount). Unlike a Consumer of CharData objects,
+ *  takes its arguments as primitives, so calling it boxes nothing. */
+@FunctionalInterface
+public interface CharCountConsumer {
+
+    /** Performs this operation on the given character and count. */
+    void accept(char chr, int count);
+}
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/** A compact table of characters and their counts, used as a memory-light alternative
+ *  to a List of CharData objects. The characters and counts are kept in two parallel
+ *  primitive arrays, so there are no Node or CharData objects at all. Small tables are
+ *  searched linearly; once a table has more than LINEAR_LIMIT characters, it also keeps
+ *  an open-addressing index from characters to their positions.
+ *  The table presents its characters in the same order as a List that received the same
+ *  updates (the most recently added character first), so index i of this table and
+ *  index i of that list hold the same character. */
+public class CharCountTable implements Successors {
+
+    // Up to this many characters, lookups scan the arrays instead of using the index
+    static final int LINEAR_LIMIT = 8;
+
+    // The characters, in the order they were added (the reverse of the list order)
+    private char[] chars;
+
+    // counts[i] is the counter of chars[i]
+    private int[] counts;
+
+    // The number of characters in this table
+    private int size;
+
+    // Open-addressing index: each slot holds (position in chars + 1), or 0 if empty.
+    // null as long as this table has at most LINEAR_LIMIT characters.
+    private int[] slots;
+
+    /** Constructs an empty table. */
+    public CharCountTable() {
+        chars = new char[2];
+        counts = new int[2];
+        size = 0;
+    }
+
+    /** Returns the number of characters in this table. */
+    public int getSize() {
+        return size;
+    }
+
+    /** Returns the character at the given index (in list order). */
+    public char charAt(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index invalide: " + index);
+        return chars[size - 1 - index];
+    }
+
+    /** Returns the count of the character at the given index (in list order). */
+    public int countAt(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index invalide: " + index);
+        return counts[size - 1 - index];
+    }
+
+    /** Returns the index (in list order) of the given character,
+     *  or -1 if there is no such character in this table. */
+    public int indexOf(char chr) {
+        int position = positionOf(chr);
+        return (position < 0) ? -1 : size - 1 - position;
+    }
+
+    /** If the given character exists in this table, increments its counter.
+     *  Otherwise, adds the given character with a counter of 1. */
+    public void update(char chr) {
+        add(chr, 1);
+    }
+
+    /** Adds the given amount to the counter of the given character,
+     *  adding the character first if it is not in this table. */
+    public void add(char chr, int count) {
+        addAt(chr, count);
+    }
+
+    // Adds the given amount to the counter of the given character, like add,
+    // and returns the position of the character in the order the characters were added.
+    int addAt(char chr, int count) {
+        int position = positionOf(chr);
+        if (position >= 0) {
+            counts[position] += count;
+            return position;
+        }
+        if (size == chars.length) {
+            chars = Arrays.copyOf(chars, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        chars[size] = chr;
+        counts[size] = count;
+        size++;
+        if (slots != null) {
+            if (size * 2 > slots.length) rehash(slots.length * 2);
+            else insertSlot(size - 1);
+        } else if (size > LINEAR_LIMIT) {
+            rehash(32);
+        }
+        return size - 1;
+    }
+
+    /** Returns a List holding the same characters and counts, in the same order. */
+    public List toList() {
+        List list = new List();
+        for (int i = 0; i < size; i++) {
+            list.add(chars[i], counts[i]);
+        }
+        return list;
+    }
+
+    /** Textual representation of this table, in the same format as List.toString,
+     *  with the probabilities computed from the counts. */
+    public String toString() {
+        List list = toList();
+        list.computeProbabilities();
+        return list.toString();
+    }
+
+    // Returns the position of the given character in the order the characters were added, or -1.
+    int positionOf(char chr) {
+        if (slots == null) {
+            for (int i = 0; i < size; i++) {
+                if (chars[i] == chr) return i;
+            }
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(chr) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (chars[slots[slot] - 1] == chr) return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    // Rebuilds the index with the given number of slots (a power of 2).
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int i = 0; i < size; i++) insertSlot(i);
+    }
+
+    // Inserts the character at the given position of the chars array into the index.
+    private void insertSlot(int position) {
+        int mask = slots.length - 1;
+        int slot = hash(chars[position]) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = position + 1;
+    }
+
+    // Spreads the bits of a character, so that close characters get far slots.
+    private static int hash(char chr) {
+        return (chr * 0x9E3779B1) >>> 16;
+    }
+}
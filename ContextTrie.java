@@ -0,0 +1,205 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/** A trie of all the contexts of 0 to maxOrder characters of a text, with the counts of the
+ *  characters that followed each context. Every order is trained in a single pass over the
+ *  text, one character at a time, and all the orders share the same nodes: the node of a
+ *  context of length k+1 is a child of the node of its first k characters. Every node also
+ *  links to the node of its context without the first character (its suffix), so the context
+ *  of a generated text can be advanced by one character in O(1), and can back off to a shorter
+ *  context when a longer one has no successors.
+ *  <p>
+ *  The trie is stored in primitive arrays, without an object per node: nodes are numbered
+ *  (the root is node 0), and the successors of a node are a linked list of edges (see
+ *  SuccessorEdges). Every edge also links to the child node of the context followed by the
+ *  character of the edge (-1 at depth maxOrder). */
+public class ContextTrie {
+
+    // The root of every trie
+    static final int ROOT = 0;
+
+    // The length of the longest contexts
+    final int maxOrder;
+
+    // Nodes: depth (length of the context), suffix node (-1 for the root)
+    private short[] nodeDepth;
+    private int[] nodeSuffix;
+    private int nodeCount;
+
+    // The successors of every node, numbered as the nodes, and the child node of every edge (-1 if none)
+    private final SuccessorEdges edges = new SuccessorEdges();
+    private int[] edgeChild;
+
+    // chain[k] is the node of the context of length k that ends at the current position of the
+    // training text, for k < chainLength (each node is the suffix of the next one)
+    private int[] chain;
+    private int[] nextChain;
+    private int chainLength;
+
+    /** Constructs an empty trie of contexts of up to maxOrder characters. */
+    public ContextTrie(int maxOrder) {
+        if (maxOrder > Short.MAX_VALUE) throw new IllegalArgumentException("Order too large: " + maxOrder);
+        this.maxOrder = maxOrder;
+        nodeDepth = new short[64];
+        nodeSuffix = new int[64];
+        edgeChild = new int[64];
+        newNode(0, -1);
+        chain = new int[maxOrder + 1];
+        nextChain = new int[maxOrder + 1];
+        startText();
+    }
+
+    /** Returns the number of nodes in this trie. */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /** Returns the number of edges (context and successor pairs) in this trie. */
+    public int getEdgeCount() {
+        return edges.getEdgeTotal();
+    }
+
+    /** Starts a new training text: the next character added has no context before it. */
+    public void startText() {
+        chain[0] = ROOT;
+        chainLength = 1;
+    }
+
+    /** Adds the given character, the next character of the training text, to this trie:
+     *  counts it as a successor of every context that ends before it. Returns true if one of
+     *  these contexts is of maxOrder characters. */
+    public boolean add(char chr) {
+        boolean whole = chainLength == maxOrder + 1;
+        nextChain[0] = ROOT;
+        // The child made for the previous (shorter) context is the suffix of the next child
+        int previousChild = ROOT;
+        for (int k = 0; k < chainLength; k++) {
+            int node = chain[k];
+            int edge = edges.edgeOf(node, chr);
+            if (edge < 0) {
+                int child = (nodeDepth[node] < maxOrder) ? newNode(nodeDepth[node] + 1, previousChild) : -1;
+                edge = newEdge(node, chr, child);
+            }
+            edges.increment(node, edge);
+            previousChild = edgeChild[edge];
+            if (previousChild >= 0) nextChain[k + 1] = previousChild;
+        }
+        int[] swap = chain;
+        chain = nextChain;
+        nextChain = swap;
+        chainLength = Math.min(chainLength + 1, maxOrder + 1);
+        return whole;
+    }
+
+    /** Returns the depth (the length of the context) of the given node. */
+    public int depth(int node) {
+        return nodeDepth[node];
+    }
+
+    /** Returns the number of successors of the given node. */
+    public int getSize(int node) {
+        return edges.getSize(node);
+    }
+
+    /** Returns the node of the context of the given node followed by the given character,
+     *  or -1 if there is no such node. */
+    public int child(int node, char chr) {
+        int edge = edges.edgeOf(node, chr);
+        return (edge < 0) ? -1 : edgeChild[edge];
+    }
+
+    /** Returns the node of the longest suffix of the given text (of up to maxOrder characters)
+     *  that is a context in this trie; the root if there is none. */
+    public int find(CharSequence text) {
+        for (int k = Math.min(maxOrder, text.length()); k > 0; k--) {
+            int node = ROOT;
+            for (int i = text.length() - k; i < text.length() && node >= 0; i++) {
+                node = child(node, text.charAt(i));
+            }
+            if (node >= 0) return node;
+        }
+        return ROOT;
+    }
+
+    /** Returns the node of the given context exactly, or -1 if it is not in this trie. */
+    public int get(CharSequence context) {
+        int node = ROOT;
+        for (int i = 0; i < context.length() && node >= 0; i++) {
+            node = child(node, context.charAt(i));
+        }
+        return node;
+    }
+
+    /** Returns the node of the context of the given node followed by the given character,
+     *  which must be one of its successors. If the context of the given node is of length
+     *  maxOrder, its first character is dropped. */
+    public int next(int node, char chr) {
+        if (nodeDepth[node] < maxOrder) return child(node, chr);
+        return (nodeSuffix[node] < 0) ? node : child(nodeSuffix[node], chr);
+    }
+
+    /** Returns the given node if it has successors; otherwise, the node of its longest suffix
+     *  that has successors, or -1 if there is none (the trie is empty). */
+    public int backoff(int node) {
+        while (node >= 0 && edges.firstEdge(node) < 0) node = nodeSuffix[node];
+        return node;
+    }
+
+    /** Sets the metrics that receive the size of every sampling table compiled. */
+    public void setMetrics(ModelMetrics metrics) {
+        edges.metrics = metrics;
+    }
+
+    /** Returns the sampling table of the successors of the given node (in list order),
+     *  compiled on first use and kept until the node changes. */
+    public SamplingTable samplingTable(int node) {
+        return edges.samplingTable(node);
+    }
+
+    /** Returns a textual representation of the successors of the given node,
+     *  in the same format as List.toString. */
+    public String toString(int node) {
+        return edges.toString(node);
+    }
+
+    /** Returns the nodes of all the contexts of the given length that have successors,
+     *  by context, in depth-first order. */
+    public LinkedHashMap<String, Integer> contexts(int length) {
+        LinkedHashMap<String, Integer> contexts = new LinkedHashMap<String, Integer>();
+        collect(ROOT, new StringBuilder(), length, contexts);
+        return contexts;
+    }
+
+    private void collect(int node, StringBuilder context, int length, LinkedHashMap<String, Integer> contexts) {
+        if (nodeDepth[node] == length) {
+            if (edges.firstEdge(node) >= 0) contexts.put(context.toString(), node);
+            return;
+        }
+        for (int edge = edges.firstEdge(node); edge >= 0; edge = edges.nextEdge(edge)) {
+            if (edgeChild[edge] < 0) continue;
+            context.append(edges.charOf(edge));
+            collect(edgeChild[edge], context, length, contexts);
+            context.setLength(context.length() - 1);
+        }
+    }
+
+    private int newNode(int depth, int suffix) {
+        if (nodeCount == nodeDepth.length) {
+            int capacity = nodeCount * 2;
+            nodeDepth = Arrays.copyOf(nodeDepth, capacity);
+            nodeSuffix = Arrays.copyOf(nodeSuffix, capacity);
+        }
+        nodeDepth[nodeCount] = (short) depth;
+        nodeSuffix[nodeCount] = suffix;
+        edges.newContext();
+        return nodeCount++;
+    }
+
+    // Adds an edge with a count of 0 and the given child at the beginning of the edges of the given node.
+    private int newEdge(int node, char chr, int child) {
+        int edge = edges.newEdge(node, chr);
+        if (edge == edgeChild.length) edgeChild = Arrays.copyOf(edgeChild, edges.getEdgeCapacity());
+        edgeChild[edge] = child;
+        return edge;
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.random.RandomGenerator;
+
+/** A sampler that draws an integer in [0, total) and finds it in the cumulative counts
+ *  of a table, without any floating-point arithmetic. Unlike the LinearSampler, it can not
+ *  fall off the end of a table due to rounding (and return ' ' instead of a successor).
+ *  Scans small tables from the start, and binary searches larger ones.
+ *  Does not draw the same characters as the LinearSampler for a given seed. */
+public class CountSampler implements Sampler {
+
+    // Tables with at most this many characters are scanned instead of binary searched
+    private final int maxScanSize;
+
+    /** Constructs a sampler that scans tables of up to 8 characters, and binary searches larger ones. */
+    public CountSampler() {
+        this(8);
+    }
+
+    /** Constructs a sampler that scans tables of up to the given number of characters,
+     *  and binary searches larger ones (0 to always binary search). */
+    public CountSampler(int maxScanSize) {
+        this.maxScanSize = maxScanSize;
+    }
+
+    /** Returns a random character from the given sampling table. */
+    public char sample(SamplingTable table, RandomGenerator random) {
+        int r = random.nextInt(table.total);
+        int[] cumulativeCounts = table.cumulativeCounts;
+        if (cumulativeCounts.length <= maxScanSize) return table.charAtCount(r);
+        // Finds the first index whose cumulative count is greater than r
+        int low = 0;
+        int high = cumulativeCounts.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeCounts[mid] <= r) low = mid + 1;
+            else high = mid;
+        }
+        return table.chars[low];
+    }
+}
@@ -0,0 +1,217 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/** A local HTTP server of texts generated from trained language models, which are loaded
+ *  once, at startup, and shared by all the requests. Serves:
+ *  <ul>
+ *  <li>/generate?model=name&prompt=text&length=n&seed=s - streams a generated text (the prompt
+ *      followed by up to n generated characters) as it is generated, a few hundred characters
+ *      at a time. The seed is optional.</li>
+ *  <li>/health - "OK" while the server is up.</li>
+ *  <li>/metrics - the counters of the server, in the Prometheus text format.</li>
+ *  </ul>
+ *  Every request is handled by a thread of its own: a virtual thread if the JVM has them
+ *  (Java 21 and later), and otherwise a thread of a cached pool. */
+public class GenerationServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // The models served, by name
+    private final Map<String, LanguageModel> models;
+
+    // Counters of the requests served
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder generatedChars = new LongAdder();
+
+    /** Constructs a server of the given models, by name, on the given address.
+     *  The server does not accept requests before it is started. */
+    public GenerationServer(InetSocketAddress address, Map<String, LanguageModel> models) throws IOException {
+        this.models = new LinkedHashMap<String, LanguageModel>(models);
+        this.executor = newThreadPerRequestExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/generate", this::generate);
+        server.createContext("/health", this::health);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        server.start();
+    }
+
+    /** Stops accepting requests, waits up to the given number of seconds
+     *  for the current requests to finish, and stops this server. */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /** Returns the port of this server (useful when constructed with port 0). */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Handles /generate.
+    private void generate(HttpExchange exchange) throws IOException {
+        requests.increment();
+        Map<String, String> params = queryParameters(exchange);
+        LanguageModel model = models.get(params.get("model"));
+        String prompt = params.get("prompt");
+        if (model == null) {
+            fail(exchange, 404, "Unknown model: " + params.get("model"));
+            return;
+        }
+        long length;
+        try {
+            length = Long.parseLong(params.getOrDefault("length", "0"));
+        } catch (NumberFormatException e) {
+            fail(exchange, 400, "Bad length: " + params.get("length"));
+            return;
+        }
+        if (prompt == null || length < 0 || !model.canGenerateFrom(prompt)) {
+            fail(exchange, 400, "Expected a prompt of at least " + model.windowLength
+                    + " characters and a length of 0 or more");
+            return;
+        }
+        RandomGenerator random;
+        try {
+            random = params.containsKey("seed") ? new Random(Long.parseLong(params.get("seed"))) : new Random();
+        } catch (NumberFormatException e) {
+            fail(exchange, 400, "Bad seed: " + params.get("seed"));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // chunked, so that the text is sent as it is generated
+        CountingWriter out = new CountingWriter(new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)));
+        try (out) {
+            model.generate(prompt, length, random, out);
+        } catch (IOException e) {
+            failedRequests.increment(); // the client went away
+        } finally {
+            generatedChars.add(Math.max(out.count - prompt.length(), 0));
+            exchange.close();
+        }
+    }
+
+    // Handles /health.
+    private void health(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "OK\n");
+    }
+
+    // Handles /metrics.
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE lm_requests_total counter\n");
+        text.append("lm_requests_total " + requests.sum() + "\n");
+        text.append("# TYPE lm_failed_requests_total counter\n");
+        text.append("lm_failed_requests_total " + failedRequests.sum() + "\n");
+        text.append("# TYPE lm_generated_chars_total counter\n");
+        text.append("lm_generated_chars_total " + generatedChars.sum() + "\n");
+        text.append("# TYPE lm_models gauge\n");
+        text.append("lm_models " + models.size() + "\n");
+        respond(exchange, 200, text.toString());
+    }
+
+    private void fail(HttpExchange exchange, int status, String message) throws IOException {
+        failedRequests.increment();
+        respond(exchange, status, message + "\n");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    // Returns the decoded parameters of the query of the given request.
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            String name = (eq < 0) ? param : param.substring(0, eq);
+            String value = (eq < 0) ? "" : param.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // Returns an executor that runs every task in a virtual thread of its own if the JVM
+    // has virtual threads, and otherwise in a thread of a cached pool.
+    private static ExecutorService newThreadPerRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // A writer that counts the characters written through it, and flushes them every
+    // FLUSH_INTERVAL characters, so that the client receives the text as it is generated
+    // instead of when the buffer fills up.
+    private static class CountingWriter extends FilterWriter {
+
+        // The number of characters written between two flushes
+        static final int FLUSH_INTERVAL = 256;
+
+        long count = 0;
+
+        // The number of characters written since the last flush
+        private int unflushed = 0;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        public void write(int c) throws IOException {
+            super.write(c);
+            count++;
+            written(1);
+        }
+
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            super.write(cbuf, off, len);
+            count += len;
+            written(len);
+        }
+
+        public void write(String str, int off, int len) throws IOException {
+            super.write(str, off, len);
+            count += len;
+            written(len);
+        }
+
+        private void written(int len) throws IOException {
+            unflushed += len;
+            if (unflushed >= FLUSH_INTERVAL) {
+                flush();
+                unflushed = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+/** A fork/join task that generates the texts of a range of prompts of a batch
+ *  (see LanguageModel.generateAll). Ranges longer than THRESHOLD are split in two
+ *  halves that are generated in parallel. */
+public class GenerationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // Ranges of up to this many prompts are generated by a single task
+    static final int THRESHOLD = 32;
+
+    private final LanguageModel model;
+    private final String[] initialTexts;
+    private final int[] textLengths;
+    private final long[] seeds;
+    private final String[] results;
+    private final int from;
+    private final int to;
+
+    /** Constructs a task that generates the texts of the prompts from (inclusive) to to (exclusive),
+     *  and stores each text at the index of its prompt in results. */
+    public GenerationTask(LanguageModel model, String[] initialTexts, int[] textLengths, long[] seeds,
+                          String[] results, int from, int to) {
+        this.model = model;
+        this.initialTexts = initialTexts;
+        this.textLengths = textLengths;
+        this.seeds = seeds;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    /** Generates the texts of the range of this task. */
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            // One builder for the whole range, grown to the longest text
+            StringBuilder generatedText = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                generatedText.setLength(0);
+                try {
+                    model.generate(initialTexts[i], textLengths[i], new Random(seeds[i]), generatedText);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // cannot happen with a StringBuilder
+                }
+                results[i] = generatedText.toString();
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new GenerationTask(model, initialTexts, textLengths, seeds, results, from, mid),
+                  new GenerationTask(model, initialTexts, textLengths, seeds, results, mid, to));
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A thread-safe histogram of non-negative values, with one bucket per power of two:
+ *  bucket 0 counts the value 0, and bucket k counts the values from 2^(k-1) to 2^k - 1.
+ *  Percentiles are approximated by the upper bound of their bucket, so they are at most
+ *  twice the exact percentiles. */
+public class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Adds the given value to this histogram. Negative values are counted as 0. */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    /** Returns the number of values in this histogram. */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Returns the mean of the values in this histogram, or 0 if there are none. */
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Returns the largest value in this histogram, or 0 if there are none. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** Returns an upper bound of the given percentile (between 0 and 100) of the values
+     *  in this histogram, or 0 if there are none. */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int k = 0; k < buckets.length(); k++) {
+            seen += buckets.get(k);
+            if (seen >= rank && seen > 0) return Math.min((k == 0) ? 0 : (1L << k) - 1, getMax());
+        }
+        return getMax();
+    }
+
+    /** Removes all the values from this histogram. */
+    public void reset() {
+        for (int k = 0; k < buckets.length(); k++) buckets.set(k, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -12,7 +12,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.net.Socket;
 import java.net.URLConnection;
 import java.util.ArrayList;
@@ -71,15 +75,53 @@ public final class In {
     // http://weblogs.java.net/blog/pat/archive/2004/10/stupid_scanner_1.html
     private static final Pattern EVERYTHING_PATTERN = Pattern.compile("\\A");
 
+    // used by readChars() to read an input stream created from a scanner in chunks
+    private static final Pattern CHUNK_PATTERN = Pattern.compile(".{1,8192}", Pattern.DOTALL);
+
     //// end: section (1 of 2) of code duplicated from In to StdIn.
 
     private Scanner scanner;
 
+    // the stream the scanner reads from, also used by readChars();
+    // null if this input stream was created from a scanner or a reader
+    private InputStream stream;
+
+    // the reader used by readChars(); created on its first call, unless given
+    private Reader reader;
+
    /**
      * Initializes an input stream from standard input.
      */
     public In() {
-        scanner = new Scanner(new BufferedInputStream(System.in), CHARSET_NAME);
+        stream = new BufferedInputStream(System.in);
+        scanner = new Scanner(stream, CHARSET_NAME);
+        scanner.useLocale(LOCALE);
+    }
+
+   /**
+     * Initializes an input stream from a given {@link InputStream},
+     * decoded as UTF-8.
+     *
+     * @param  is the input stream
+     * @throws IllegalArgumentException if {@code is} is {@code null}
+     */
+    public In(InputStream is) {
+        if (is == null) throw new IllegalArgumentException("input stream argument is null");
+        stream = new BufferedInputStream(is);
+        scanner = new Scanner(stream, CHARSET_NAME);
+        scanner.useLocale(LOCALE);
+    }
+
+   /**
+     * Initializes an input stream from a given {@link Reader}.
+     *
+     * @param  reader the reader
+     * @throws IllegalArgumentException if {@code reader} is {@code null}
+     */
+    public In(Reader reader) {
+        if (reader == null) throw new IllegalArgumentException("reader argument is null");
+        this.reader = reader;
+        scanner = new Scanner(reader);
         scanner.useLocale(LOCALE);
     }
 
@@ -94,7 +136,8 @@ public final class In {
         if (socket == null) throw new IllegalArgumentException("socket argument is null");
         try {
             InputStream is = socket.getInputStream();
-            scanner = new Scanner(new BufferedInputStream(is), CHARSET_NAME);
+            stream = new BufferedInputStream(is);
+            scanner = new Scanner(stream, CHARSET_NAME);
             scanner.useLocale(LOCALE);
         }
         catch (IOException ioe) {
@@ -114,7 +157,8 @@ public final class In {
         try {
             URLConnection site = url.openConnection();
             InputStream is     = site.getInputStream();
-            scanner            = new Scanner(new BufferedInputStream(is), CHARSET_NAME);
+            stream             = new BufferedInputStream(is);
+            scanner            = new Scanner(stream, CHARSET_NAME);
             scanner.useLocale(LOCALE);
         }
         catch (IOException ioe) {
@@ -135,7 +179,8 @@ public final class In {
             // for consistency with StdIn, wrap with BufferedInputStream instead of use
             // file as argument to Scanner
             FileInputStream fis = new FileInputStream(file);
-            scanner = new Scanner(new BufferedInputStream(fis), CHARSET_NAME);
+            stream = new BufferedInputStream(fis);
+            scanner = new Scanner(stream, CHARSET_NAME);
             scanner.useLocale(LOCALE);
         }
         catch (IOException ioe) {
@@ -162,7 +207,8 @@ public final class In {
                 // for consistency with StdIn, wrap with BufferedInputStream instead of use
                 // file as argument to Scanner
                 FileInputStream fis = new FileInputStream(file);
-                scanner = new Scanner(new BufferedInputStream(fis), CHARSET_NAME);
+                stream = new BufferedInputStream(fis);
+                scanner = new Scanner(stream, CHARSET_NAME);
                 scanner.useLocale(LOCALE);
                 return;
             }
@@ -187,7 +233,8 @@ public final class In {
             // site.addRequestProperty("User-Agent", "Mozilla/4.76");
 
             InputStream is     = site.getInputStream();
-            scanner            = new Scanner(new BufferedInputStream(is), CHARSET_NAME);
+            stream             = new BufferedInputStream(is);
+            scanner            = new Scanner(stream, CHARSET_NAME);
             scanner.useLocale(LOCALE);
         }
         catch (IOException ioe) {
@@ -317,6 +364,60 @@ public final class In {
     }
 
 
+   /**
+     * Reads up to {@code length} characters from this input stream into the given
+     * array, starting at the given offset, without going through the scanner.
+     * Use this method to read a large input stream in chunks, in bounded memory;
+     * do not mix it with the other read methods on the same input stream.
+     * An input stream created from a scanner is read through the scanner,
+     * in chunks of up to 8192 characters.
+     *
+     * @param  buffer the array to read into
+     * @param  offset the position of the first character to read in {@code buffer}
+     * @param  length the maximum number of characters to read
+     * @return the number of characters read; {@code -1} if the input stream is empty
+     * @throws UncheckedIOException if the input stream cannot be read
+     */
+    public int readChars(char[] buffer, int offset, int length) {
+        if (reader == null) {
+            if (stream != null) reader = new InputStreamReader(stream, Charset.forName(CHARSET_NAME));
+            else reader = scannerReader();
+        }
+        try {
+            return reader.read(buffer, offset, length);
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException("Could not read input stream", ioe);
+        }
+    }
+
+    // Returns a reader of the rest of the input of the scanner, that takes a chunk of the
+    // input from the scanner whenever it has read the previous one.
+    private Reader scannerReader() {
+        return new Reader() {
+            private String chunk = "";
+            private int position = 0;
+
+            public int read(char[] cbuf, int off, int len) {
+                if (len == 0) return 0;
+                if (position == chunk.length()) {
+                    String next = scanner.findWithinHorizon(CHUNK_PATTERN, 0);
+                    if (next == null) return -1;
+                    chunk = next;
+                    position = 0;
+                }
+                int n = Math.min(len, chunk.length() - position);
+                chunk.getChars(position, position + n, cbuf, off);
+                position += n;
+                return n;
+            }
+
+            public void close() {
+                scanner.close();
+            }
+        };
+    }
+
    /**
      * Reads the next token from this input stream and returns it as a {@code String}.
      *
@@ -0,0 +1,138 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Metrics of a language model that keep counters and histograms of its measurements,
+ *  and expose them as an MBean (see JmxModelMetricsMBean), for example:
+ *  <pre>
+ *  JmxModelMetrics metrics = new JmxModelMetrics();
+ *  metrics.register("origin");
+ *  model.setMetrics(metrics);
+ *  </pre> */
+public class JmxModelMetrics implements ModelMetrics, JmxModelMetricsMBean {
+
+    // Training
+    private final LongAdder trainedChars = new LongAdder();
+    private final LongAdder windowsSeen = new LongAdder();
+    private final LongAdder windowsCreated = new LongAdder();
+    private final LongAdder trainNanos = new LongAdder();
+
+    // Generation
+    private final LongAdder generatedChars = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final Histogram generateNanos = new Histogram();
+
+    // The number of successors of every sampling table compiled, and of every table sampled
+    private final Histogram successorListLengths = new Histogram();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampledSuccessors = new LongAdder();
+
+    /** Registers these metrics with the platform MBean server, under the name
+     *  LanguageModel:type=Metrics,name=(the given name). */
+    public void register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("LanguageModel:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    public void trained(long chars, long windowsSeen, long windowsCreated, long nanos) {
+        trainedChars.add(chars);
+        this.windowsSeen.add(windowsSeen);
+        this.windowsCreated.add(windowsCreated);
+        trainNanos.add(nanos);
+    }
+
+    public void compiled(int successors) {
+        successorListLengths.record(successors);
+    }
+
+    public void sampled(int successors) {
+        samples.increment();
+        sampledSuccessors.add(successors);
+    }
+
+    public void generated(long chars, long nanos, boolean missed) {
+        generatedChars.add(chars);
+        generateNanos.record(nanos);
+        if (missed) lookupMisses.increment();
+    }
+
+    public long getTrainedChars() {
+        return trainedChars.sum();
+    }
+
+    public long getWindowsSeen() {
+        return windowsSeen.sum();
+    }
+
+    public long getWindowsCreated() {
+        return windowsCreated.sum();
+    }
+
+    public double getTrainCharsPerSecond() {
+        long nanos = trainNanos.sum();
+        return (nanos == 0) ? 0 : trainedChars.sum() * 1e9 / nanos;
+    }
+
+    public long getGenerateCalls() {
+        return generateNanos.getCount();
+    }
+
+    public long getGeneratedChars() {
+        return generatedChars.sum();
+    }
+
+    public long getLookupMisses() {
+        return lookupMisses.sum();
+    }
+
+    public double getGenerateLatencyMeanMicros() {
+        return generateNanos.getMean() / 1000;
+    }
+
+    public long getGenerateLatencyP50Micros() {
+        return generateNanos.getPercentile(50) / 1000;
+    }
+
+    public long getGenerateLatencyP99Micros() {
+        return generateNanos.getPercentile(99) / 1000;
+    }
+
+    public long getGenerateLatencyMaxMicros() {
+        return generateNanos.getMax() / 1000;
+    }
+
+    public long getCompiledTables() {
+        return successorListLengths.getCount();
+    }
+
+    public double getSuccessorListLengthMean() {
+        return successorListLengths.getMean();
+    }
+
+    public long getSuccessorListLengthP99() {
+        return successorListLengths.getPercentile(99);
+    }
+
+    public long getSuccessorListLengthMax() {
+        return successorListLengths.getMax();
+    }
+
+    public double getSuccessorsPerSampleMean() {
+        long n = samples.sum();
+        return (n == 0) ? 0 : (double) sampledSuccessors.sum() / n;
+    }
+
+    public void reset() {
+        trainedChars.reset();
+        windowsSeen.reset();
+        windowsCreated.reset();
+        trainNanos.reset();
+        generatedChars.reset();
+        lookupMisses.reset();
+        generateNanos.reset();
+        successorListLengths.reset();
+        samples.reset();
+        sampledSuccessors.reset();
+    }
+}
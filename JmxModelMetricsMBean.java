@@ -0,0 +1,39 @@
+/** The management interface of JmxModelMetrics: the attributes and operations
+ *  that JMX clients (such as jconsole) see. Times are in microseconds. */
+public interface JmxModelMetricsMBean {
+
+    long getTrainedChars();
+
+    long getWindowsSeen();
+
+    long getWindowsCreated();
+
+    double getTrainCharsPerSecond();
+
+    long getGenerateCalls();
+
+    long getGeneratedChars();
+
+    long getLookupMisses();
+
+    double getGenerateLatencyMeanMicros();
+
+    long getGenerateLatencyP50Micros();
+
+    long getGenerateLatencyP99Micros();
+
+    long getGenerateLatencyMaxMicros();
+
+    long getCompiledTables();
+
+    double getSuccessorListLengthMean();
+
+    long getSuccessorListLengthP99();
+
+    long getSuccessorListLengthMax();
+
+    double getSuccessorsPerSampleMean();
+
+    /** Resets all the counters and histograms. */
+    void reset();
+}
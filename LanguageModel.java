@@ -1,18 +1,90 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 public class LanguageModel {
 
+    // The number of characters read at a time when training from an input stream
+    static final int CHUNK_SIZE = 1 << 16;
+
     // The map of this model.
     // Maps windows to lists of charachter data objects.
     HashMap<String, List> CharDataMap;
     
+    // The map of this model when it uses compact successor tables (see setCompactSuccessors).
+    // Maps windows to tables of characters and their counts. Used instead of CharDataMap.
+    HashMap<String, CharCountTable> CharCountMap;
+
+    // The contexts of this model when it stores its windows in a trie (see setTrieStorage),
+    // or backs off to shorter windows (see setBackoff). Holds the windows of every length
+    // up to windowLength. Used instead of the maps.
+    ContextTrie contextTrie;
+
+    // The windows of this model when it packs them into long keys (see setPackedWindows).
+    // Used instead of the maps.
+    PackedWindowMap packedWindows;
+
+    // The windows of the maps of this model, indexed by rolling window keys (see WindowIndex),
+    // so that generate can look up the next window without creating a String. The value of a
+    // window is its Successors until generate first reaches it, and its compiled SamplingTable
+    // from then on, so only the windows that are used are compiled, and the Lists are not modified.
+    // null when the model was not compiled yet, or was trained since it was compiled.
+    // Volatile, so that threads that generate concurrently all see the compiled index.
+    volatile WindowIndex<Object> samplingIndex;
+
+    // The windows whose successors changed since this model was compiled (see update),
+    // whose sampling tables are compiled again the next time they are needed.
+    private final HashSet<String> dirtyWindows = new HashSet<String>();
+    private volatile boolean dirty = false;
+
+    // The last characters (up to windowLength) of the text this model was last trained on,
+    // which update continues.
+    private char[] lastWindow = new char[0];
+
     // The window length used in this model.
     int windowLength;
     
     // The random number generator used by this model. 
 	private Random randomGenerator;
 
+    // The strategy used by this model to draw characters from its sampling tables.
+    private Sampler sampler = new LinearSampler();
+
+    // Receives the measurements of the training and generation of this model.
+    private ModelMetrics metrics = ModelMetrics.NONE;
+
+    // Whether this model stores successors in CharCountTables instead of Lists.
+    private boolean compactSuccessors = false;
+
+    // The order of the successor Lists of this model.
+    private List.Order successorOrder = List.Order.INSERTION;
+
+    // Whether this model stores its windows in a ContextTrie instead of a map.
+    private boolean trieStorage = false;
+
+    // Whether this model packs its windows into long keys instead of storing them in a map.
+    private boolean packedWindowStorage = false;
+
+    // Whether this model trains all the window lengths up to windowLength, and backs off.
+    private boolean backoff = false;
+
+    // The maximal number of windows kept while training (see setWindowBudget); 0 for no limit.
+    private int windowBudget = 0;
+
     /** Constructs a language model with the given window length and a given
      *  seed value. Generating texts from this model multiple times with the 
      *  same seed value will produce the same random texts. Good for debugging. */
@@ -20,6 +92,7 @@ public class LanguageModel {
         this.windowLength = windowLength;
         randomGenerator = new Random(seed);
         CharDataMap = new HashMap<String, List>();
+        CharCountMap = new HashMap<String, CharCountTable>();
     }
 
     /** Constructs a language model with the given window length.
@@ -29,67 +102,786 @@ public class LanguageModel {
         this.windowLength = windowLength;
         randomGenerator = new Random();
         CharDataMap = new HashMap<String, List>();
+        CharCountMap = new HashMap<String, CharCountTable>();
+    }
+
+    /** Sets the sampler used by this model to draw characters when generating texts.
+     *  The default LinearSampler and the BinarySearchSampler reproduce the texts of the
+     *  original getRandomChar for a given seed (and, like it, may draw ' ' when rounding makes
+     *  the cumulative probabilities fall short of 1). The CountSampler draws from the integer
+     *  counts, never falls off a table, and the AliasSampler is faster for windows with many
+     *  successors; both generate different texts for a given seed. */
+    public void setSampler(Sampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /** Sets the metrics that receive the measurements of this model (see ModelMetrics),
+     *  for example a JmxModelMetrics. By default, nothing is measured. */
+    public void setMetrics(ModelMetrics metrics) {
+        this.metrics = metrics;
+        if (contextTrie != null) contextTrie.setMetrics(metrics);
+        if (packedWindows != null) packedWindows.setMetrics(metrics);
+    }
+
+    /** Sets whether this model stores the successors of each window in a compact
+     *  CharCountTable (two primitive arrays) instead of a List of CharData objects.
+     *  Uses several times less memory, and generates the same texts. Only for models that store
+     *  their windows in maps, with successors in insertion order.
+     *  Throws an IllegalStateException if the model was already trained, or if the setting
+     *  conflicts with the others. */
+    public void setCompactSuccessors(boolean compactSuccessors) {
+        checkSetting("Compact successors", compactSuccessors
+                && (!storesInMaps() || successorOrder != List.Order.INSERTION));
+        this.compactSuccessors = compactSuccessors;
     }
 
-    /** Builds a language model from the text in the given file (the corpus). */
+    /** Sets the order of the successor Lists of this model (see List.Order). The default,
+     *  INSERTION, is the order of the original model, which toString shows and which seeded
+     *  texts depend on. MOVE_TO_FRONT and BY_COUNT keep the frequent successors first, so
+     *  training and drawing scan shorter prefixes of the lists; they generate texts with the
+     *  same probabilities, but not the same texts for a given seed.
+     *  Only for Lists (not compact successors) of models that store their windows in maps.
+     *  Throws an IllegalStateException if the model was already trained, or if the setting
+     *  conflicts with the others. */
+    public void setSuccessorOrder(List.Order successorOrder) {
+        checkSetting("A successor order", successorOrder != List.Order.INSERTION
+                && (compactSuccessors || !storesInMaps()));
+        this.successorOrder = successorOrder;
+    }
+
+    /** Sets whether this model stores its windows in a ContextTrie instead of a map from window
+     *  strings: overlapping windows share the nodes of their common prefixes, and generating a
+     *  character advances the current window by following a link of the trie, instead of hashing
+     *  a new substring. Generates the same texts as a model that uses a map; toString lists the
+     *  windows in trie order. Not with compact successors, packed windows, or a successor order.
+     *  Throws an IllegalStateException if the model was already trained, or if the setting
+     *  conflicts with the others. */
+    public void setTrieStorage(boolean trieStorage) {
+        checkSetting("Trie storage", trieStorage && conflictsWithTrie());
+        this.trieStorage = trieStorage;
+    }
+
+    /** Sets whether this model packs its windows into long keys, in a PackedWindowMap, instead
+     *  of storing them in a map from window strings: every distinct character of the corpus gets
+     *  a small code, so windows of up to 9 characters of an alphabet of up to 128 characters fit
+     *  in a long. No String is created for a window, neither when training nor when generating,
+     *  and a window takes a few bytes instead of a String and a map entry. Generates the same
+     *  texts as a model that uses a map; toString lists the windows in the order they were first
+     *  seen. Training a corpus whose alphabet does not fit (see PackedWindowMap) throws an
+     *  IllegalStateException. Not with compact successors, a trie, backoff, or a successor order.
+     *  Throws an IllegalStateException if the model was already trained, or if the setting
+     *  conflicts with the others. */
+    public void setPackedWindows(boolean packedWindowStorage) {
+        checkSetting("Packed windows", packedWindowStorage && (compactSuccessors || !storesInMaps()
+                || successorOrder != List.Order.INSERTION));
+        this.packedWindowStorage = packedWindowStorage;
+    }
+
+    /** Sets whether this model is a variable-order model: trains the windows of every length
+     *  from 1 to windowLength, in a single pass over the text, and stores them in one shared
+     *  ContextTrie. When generating, if the last windowLength characters are not a window of
+     *  the model (or never had a successor), the model backs off to the longest shorter window
+     *  that has successors, instead of stopping. Implies setTrieStorage(true), and has the
+     *  same restrictions.
+     *  Throws an IllegalStateException if the model was already trained, or if the setting
+     *  conflicts with the others. */
+    public void setBackoff(boolean backoff) {
+        checkSetting("Backoff", backoff && conflictsWithTrie());
+        this.backoff = backoff;
+    }
+
+    // Throws an IllegalStateException if this model was already trained, since its windows
+    // are stored according to its settings, or if the given setting conflicts with the others.
+    private void checkSetting(String setting, boolean conflicts) {
+        if (windowCount() > 0 || lastWindow.length > 0 || contextTrie != null || packedWindows != null) {
+            throw new IllegalStateException(setting + " must be set before the model is trained");
+        }
+        if (conflicts) {
+            throw new IllegalStateException(setting + " cannot be combined with the other settings of this model");
+        }
+    }
+
+    // Checks if this model stores its windows in maps (not in a trie, and not packed).
+    private boolean storesInMaps() {
+        return !trieStorage && !backoff && !packedWindowStorage;
+    }
+
+    // Checks if the settings of this model conflict with storing its windows in a trie.
+    private boolean conflictsWithTrie() {
+        return compactSuccessors || packedWindowStorage || successorOrder != List.Order.INSERTION;
+    }
+
+    /** Sets the maximal number of windows this model keeps while it is trained (0, the default,
+     *  for no limit). Whenever a chunk of the corpus leaves the model with more windows, the
+     *  model is pruned (see prune) with a minimal count of 2, then 3, and so on, until it has
+     *  no more windows than the budget. The counts of the removed windows are lost, so a model
+     *  trained within a budget is an approximation of the full model. A model with a budget is
+     *  trained sequentially by trainParallel. Only for models that store their windows in maps:
+     *  training a model that stores them in a trie, or packs them, throws an IllegalStateException. */
+    public void setWindowBudget(int windowBudget) {
+        this.windowBudget = windowBudget;
+    }
+
+    /** Builds a language model from the text in the given file (the corpus).
+     *  A local file is memory-mapped and read with a MappedReader; any other
+     *  name (a resource or a URL) is read with In. */
 	public void train(String fileName) {
-        In input = new In(fileName); 
-        String text = input.readAll();
-        for (int i = 0; i <= text.length() - windowLength - 1; i++) {
-            String window = text.substring(i, i + windowLength);
-            char nextChar = text.charAt(i + windowLength);
-            List charList = CharDataMap.getOrDefault(window, new List());
-            charList.update(nextChar);
-            CharDataMap.put(window, charList);
+        File file = new File(fileName);
+        if (!file.isFile()) {
+            train(new In(fileName));
+            return;
+        }
+        try (MappedReader reader = new MappedReader(file.toPath())) {
+            train(reader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not open " + fileName, e);
         }
 	}
 
-    // Computes and sets the probabilities (p and cp fields) of all the
-	// characters in the given list. */
-	public void calculateProbabilities(List probs) {				
-        int total = 0;
-        for (int i = 0; i < probs.getSize(); i++) {
-            total += probs.get(i).count;
+    /** Builds a language model from the text read from the given reader (the corpus). */
+    public void train(Reader reader) {
+        train(new In(reader));
+    }
+
+    /** Builds a language model from the text of the given input stream (the corpus).
+     *  The text is read in chunks of CHUNK_SIZE characters, and only the last windowLength
+     *  characters of a chunk are kept for the next one, so the corpus never has to fit in
+     *  memory as a whole (only the model does). Reads standard input if given new In(). */
+    public void train(In input) {
+        train(input, false);
+    }
+
+    /** Adds the given text to this model, as the continuation of the text this model was last
+     *  trained on (by train or update): the windows that start at the end of the previous text
+     *  and end in the given text are counted too. If the model was already compiled, only the
+     *  windows of the given text are compiled again, the next time the model is used.
+     *  Like train, must not be called while other threads generate texts from this model. */
+    public void update(CharSequence text) {
+        train(new In(new StringReader(text.toString())), true);
+    }
+
+    // Trains this model on the text of the given input stream, as a new text,
+    // or as the continuation of the text it was last trained on.
+    private void train(In input, boolean continued) {
+        if (windowBudget > 0 && (backoff || trieStorage || packedWindowStorage)) {
+            throw new IllegalStateException("A model stored in a context trie or packed windows cannot have a window budget");
+        }
+        if (backoff || trieStorage) {
+            trainContexts(input, continued);
+            return;
+        }
+        if (packedWindowStorage) {
+            trainPacked(input, continued);
+            return;
+        }
+        long startTime = System.nanoTime();
+        int windowCount = windowCount();
+        long chars = 0;
+        long windowsSeen = 0;
+        char[] buffer = new char[windowLength + CHUNK_SIZE];
+        // Looks windows up by a rolling key over the characters of the text,
+        // so a window's String is only created the first time the window is seen
+        WindowIndex<Successors> index = new WindowIndex<Successors>(windowLength);
+        long key = 0;
+        // The buffer holds length characters; the next window to count starts at start
+        int length = 0;
+        int start = 0;
+        if (continued) {
+            System.arraycopy(lastWindow, 0, buffer, 0, lastWindow.length);
+            length = lastWindow.length;
+            if (length == windowLength) key = index.keyOf(buffer, 0);
+        }
+        int read;
+        while ((read = input.readChars(buffer, length, buffer.length - length)) >= 0) {
+            if (length < windowLength && length + read >= windowLength) {
+                key = index.keyOf(buffer, 0);
+            }
+            length += read;
+            chars += read;
+            for (; start + windowLength < length; start++) {
+                Successors successors = index.get(buffer, start, key);
+                if (successors == null) {
+                    String window = new String(buffer, start, windowLength);
+                    successors = successorsOf(window);
+                    index.put(window, key, successors);
+                }
+                char nextChar = buffer[start + windowLength];
+                successors.update(nextChar);
+                key = index.roll(key, buffer[start], nextChar);
+            }
+            // Carries the last window over to the next chunk
+            System.arraycopy(buffer, start, buffer, 0, length - start);
+            windowsSeen += start;
+            length -= start;
+            start = 0;
+            if (windowBudget > 0 && windowCount() > windowBudget) {
+                pruneToBudget();
+                // The index refers to successors that may have been removed
+                index = new WindowIndex<Successors>(windowLength);
+                if (length >= windowLength) key = index.keyOf(buffer, 0);
+            }
+        }
+        lastWindow = Arrays.copyOf(buffer, length);
+        changed(index.windows());
+        metrics.trained(chars, windowsSeen, windowCount() - windowCount, System.nanoTime() - startTime);
+    }
+
+    // Trains the context trie of this model on the text of the given input stream.
+    private void trainContexts(In input, boolean continued) {
+        long startTime = System.nanoTime();
+        if (contextTrie == null) {
+            contextTrie = new ContextTrie(windowLength);
+            contextTrie.setMetrics(metrics);
+        }
+        int windowCount = windowCount();
+        if (!continued) contextTrie.startText();
+        char[] buffer = new char[CHUNK_SIZE];
+        long chars = 0;
+        long windowsSeen = 0;
+        int read;
+        while ((read = input.readChars(buffer, 0, buffer.length)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                if (contextTrie.add(buffer[i])) windowsSeen++;
+            }
+            chars += read;
+        }
+        invalidate();
+        metrics.trained(chars, windowsSeen, windowCount() - windowCount, System.nanoTime() - startTime);
+    }
+
+    // Trains the packed windows of this model on the text of the given input stream.
+    private void trainPacked(In input, boolean continued) {
+        long startTime = System.nanoTime();
+        if (packedWindows == null) {
+            packedWindows = new PackedWindowMap(windowLength);
+            packedWindows.setMetrics(metrics);
+        }
+        int windowCount = windowCount();
+        if (!continued) packedWindows.startText();
+        char[] buffer = new char[CHUNK_SIZE];
+        long chars = 0;
+        long windowsSeen = 0;
+        int read;
+        while ((read = input.readChars(buffer, 0, buffer.length)) >= 0) {
+            // So that a chunk with too many distinct characters is not added at all
+            packedWindows.checkAlphabet(buffer, 0, read);
+            for (int i = 0; i < read; i++) {
+                if (packedWindows.add(buffer[i])) windowsSeen++;
+            }
+            chars += read;
+        }
+        invalidate();
+        metrics.trained(chars, windowsSeen, windowCount() - windowCount, System.nanoTime() - startTime);
+    }
+
+    /** Builds a language model from the text in the given file (the corpus),
+     *  using the threads of the common fork/join pool.
+     *  Results in exactly the same model as train(fileName). */
+    public void trainParallel(String fileName) {
+        trainParallel(fileName, ForkJoinPool.commonPool());
+    }
+
+    /** Builds a language model from the text in the given file (the corpus),
+     *  using the threads of the given fork/join pool. The corpus is split into parts
+     *  that overlap by windowLength characters, so every window is counted exactly once.
+     *  Results in exactly the same model as train(fileName).
+     *  A model that stores its windows in a trie, or packs them, or has a window budget,
+     *  or orders its successor Lists other than by insertion (whose order depends on the
+     *  whole history of updates, which merged shards do not replay), is trained sequentially. */
+    public void trainParallel(String fileName, ForkJoinPool pool) {
+        if (backoff || trieStorage || packedWindowStorage || windowBudget > 0
+                || (!compactSuccessors && successorOrder != List.Order.INSERTION)) {
+            train(fileName);
+            return;
+        }
+        long startTime = System.nanoTime();
+        int windowCount = windowCount();
+        In input = new In(fileName);
+        char[] chars = input.readAll().toCharArray();
+        int windows = Math.max(chars.length - windowLength, 0);
+        TrainingShard shard = pool.invoke(new TrainingTask(chars, windowLength, 0, windows));
+        shard.mergeInto(this);
+        lastWindow = Arrays.copyOfRange(chars, Math.max(chars.length - windowLength, 0), chars.length);
+        invalidate();
+        metrics.trained(chars.length, windows, windowCount() - windowCount, System.nanoTime() - startTime);
+    }
+
+    /** Removes the successors that were counted fewer than minCount times, and the windows
+     *  left without successors. Then, as long as some successor leads to a removed window (the
+     *  window made of the last windowLength characters of its window followed by the successor),
+     *  removes that successor too. So a generated text never reaches a window that was removed:
+     *  generation stops early only where the unpruned model stops. The remaining successors keep
+     *  their counts and order, so prune(1) changes nothing.
+     *  Returns a report of what was removed. Only for models that store their windows in maps. */
+    public PruneReport prune(int minCount) {
+        if (contextTrie != null) {
+            throw new IllegalStateException("A model stored in a context trie cannot be pruned");
+        }
+        if (packedWindows != null) {
+            throw new IllegalStateException("A model with packed windows cannot be pruned");
+        }
+        int windowsBefore = windowCount();
+        long successorsBefore = successorCount();
+        long bytesBefore = estimatedBytes();
+        HashSet<String> removed = new HashSet<String>();
+        // The first pass removes the rare successors, the next ones those of removed windows
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<Map.Entry<String, List>> it = CharDataMap.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, List> entry = it.next();
+                List list = entry.getValue();
+                for (CharData cd : list.toArray()) {
+                    if (!keeps(entry.getKey(), cd.chr, cd.count, minCount, removed)) {
+                        list.remove(cd.chr);
+                        changed = true;
+                    }
+                }
+                if (list.getSize() == 0) {
+                    removed.add(entry.getKey());
+                    it.remove();
+                }
+            }
+            for (Iterator<Map.Entry<String, CharCountTable>> it = CharCountMap.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, CharCountTable> entry = it.next();
+                CharCountTable table = entry.getValue();
+                CharCountTable kept = new CharCountTable();
+                for (int j = table.getSize() - 1; j >= 0; j--) {
+                    if (keeps(entry.getKey(), table.charAt(j), table.countAt(j), minCount, removed)) {
+                        kept.add(table.charAt(j), table.countAt(j));
+                    }
+                }
+                if (kept.getSize() == table.getSize()) continue;
+                changed = true;
+                if (kept.getSize() == 0) {
+                    removed.add(entry.getKey());
+                    it.remove();
+                } else {
+                    entry.setValue(kept);
+                }
+            }
         }
-        for (int i = 0; i < probs.getSize(); i++) {
-            CharData charData = probs.get(i);
-            charData.p = (double) charData.count / total;
+        invalidate();
+        return new PruneReport(windowsBefore, windowCount(), successorsBefore, successorCount(),
+                               bytesBefore, estimatedBytes());
+    }
+
+    // Checks if prune keeps the given successor of the given window.
+    private boolean keeps(String window, char chr, int count, int minCount, HashSet<String> removed) {
+        if (count < minCount) return false;
+        return windowLength == 0 || !removed.contains(window.substring(1) + chr);
+    }
+
+    // Prunes this model with higher and higher minimal counts, until it is within its window budget.
+    private void pruneToBudget() {
+        for (int minCount = 2; windowCount() > windowBudget; minCount++) {
+            prune(minCount);
         }
+    }
+
+    // Returns the number of successors of all the windows of this model (stored in maps).
+    private long successorCount() {
+        long count = 0;
+        for (List list : CharDataMap.values()) count += list.getSize();
+        for (CharCountTable table : CharCountMap.values()) count += table.getSize();
+        return count;
+    }
+
+    // Estimates the heap used by the windows and successors of this model (stored in maps),
+    // in bytes, for a 64-bit JVM with compressed references and compact strings. A window
+    // costs its String, its map entry and its share of the map's table; a List costs 32 bytes,
+    // plus 64 per successor (a Node and a CharData); a CharCountTable costs 24 bytes, plus its
+    // arrays (counted at their size, not their capacity).
+    private long estimatedBytes() {
+        long bytes = 0;
+        for (String window : CharDataMap.keySet()) {
+            bytes += windowBytes(window) + 32 + 64L * CharDataMap.get(window).getSize();
+        }
+        for (String window : CharCountMap.keySet()) {
+            int size = CharCountMap.get(window).getSize();
+            bytes += windowBytes(window) + 24 + align(16 + 2 * size) + align(16 + 4 * size);
+            if (size > CharCountTable.LINEAR_LIMIT) bytes += align(16 + 4 * 2 * size);
+        }
+        return bytes;
+    }
+
+    private static long windowBytes(String window) {
+        boolean latin1 = window.chars().allMatch(c -> c < 256);
+        return 24 + align(16 + (latin1 ? 1 : 2) * window.length()) + 32 + 8;
+    }
+
+    // Rounds the given size up to a multiple of 8 bytes.
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+
+    // Returns the successors of the given window, adding an empty
+    // successors container to the map of this model if there is none.
+    Successors successorsOf(String window) {
+        if (compactSuccessors) {
+            CharCountTable table = CharCountMap.get(window);
+            if (table == null) {
+                table = new CharCountTable();
+                CharCountMap.put(window, table);
+            }
+            return table;
+        }
+        List charList = CharDataMap.get(window);
+        if (charList == null) {
+            charList = new List(successorOrder);
+            CharDataMap.put(window, charList);
+        }
+        return charList;
+    }
+
+    /** Indexes the windows of this model by rolling key, for generate, unless they are already
+     *  indexed (and unchanged since). The sampling table of a window is compiled when generate
+     *  first reaches it, and kept until the window changes. Called by generate when needed. */
+    public synchronized void compile() {
+        if (samplingIndex == null) index();
+        else if (dirty) recompile();
+    }
+
+    // Indexes the windows of the maps of this model, with their successors.
+    private synchronized void index() {
+        WindowIndex<Object> index = new WindowIndex<Object>(windowLength);
+        for (String window : CharDataMap.keySet()) {
+            index.put(window, index.keyOf(window), CharDataMap.get(window));
+        }
+        for (String window : CharCountMap.keySet()) {
+            index.put(window, index.keyOf(window), CharCountMap.get(window));
+        }
+        dirtyWindows.clear();
+        dirty = false;
+        samplingIndex = index;
+    }
+
+    // Returns the number of windows of this model; for a model with a context trie,
+    // the number of its contexts of every length.
+    private int windowCount() {
+        int count = CharDataMap.size() + CharCountMap.size();
+        if (packedWindows != null) count += packedWindows.getSize();
+        return (contextTrie == null) ? count : count + contextTrie.getNodeCount();
+    }
+
+    // Marks the given windows, whose successors changed, to be compiled again. Does nothing
+    // if this model was not compiled yet, since all its windows will be compiled anyway.
+    private synchronized void changed(String[] windows) {
+        if (samplingIndex == null) return;
+        for (String window : windows) dirtyWindows.add(window);
+        dirty = !dirtyWindows.isEmpty();
+    }
+
+    // Indexes the changed windows again, in place, so that their sampling tables are compiled
+    // again when generate reaches them.
+    private synchronized void recompile() {
+        for (String window : dirtyWindows) {
+            List list = CharDataMap.get(window);
+            Successors successors = (list != null) ? list : CharCountMap.get(window);
+            samplingIndex.set(window, samplingIndex.keyOf(window), successors);
+        }
+        dirtyWindows.clear();
+        dirty = false;
+    }
+
+    // Discards the compiled index of this model, after it was trained.
+    private void invalidate() {
+        samplingIndex = null;
+    }
+
+    /** Saves this model to the file at the given path, as a binary snapshot
+     *  (see ModelSnapshot) that includes the cumulative probabilities.
+     *  Throws an IllegalStateException if this model backs off to shorter windows. */
+    public void save(Path path) throws IOException {
+        ModelSnapshot.write(this, path, true);
+    }
+
+    /** Loads a model saved by save(path). Generating texts from the loaded model
+     *  will produce different random texts (see LanguageModel(int)). */
+    public static LanguageModel load(Path path) throws IOException {
+        try (ModelSnapshot snapshot = ModelSnapshot.map(path)) {
+            return load(snapshot, new LanguageModel(snapshot.getWindowLength()));
+        }
+    }
+
+    /** Loads a model saved by save(path), with the given seed value. Generating texts from the
+     *  loaded model will produce the same texts as a model trained with the same seed value. */
+    public static LanguageModel load(Path path, int seed) throws IOException {
+        try (ModelSnapshot snapshot = ModelSnapshot.map(path)) {
+            return load(snapshot, new LanguageModel(snapshot.getWindowLength(), seed));
+        }
+    }
+
+    /** Returns a read-only copy of this model in off-heap memory (see ModelSnapshot.offHeap).
+     *  The copy generates the same texts as this model, and must be closed when no longer used.
+     *  Throws an IllegalStateException if this model backs off to shorter windows. */
+    public ModelSnapshot toOffHeap() {
+        return ModelSnapshot.offHeap(this);
+    }
+
+    // Fills the given empty model with the windows and successors of the given snapshot,
+    // in the order they were saved, so that the maps of the model are the same as when saved.
+    private static LanguageModel load(ModelSnapshot snapshot, LanguageModel model) {
+        model.setCompactSuccessors(snapshot.isCompact());
+        for (int w = 0; w < snapshot.getWindowCount(); w++) {
+            Successors successors = model.successorsOf(snapshot.windowAt(w));
+            for (int j = snapshot.getSize(w) - 1; j >= 0; j--) {
+                successors.add(snapshot.charAt(w, j), snapshot.countAt(w, j));
+            }
+        }
+        return model;
+    }
+
+    // Returns the windows of this model, in the iteration order of its maps.
+    // For a variable-order model, only the windows of length windowLength.
+    String[] windows() {
+        ArrayList<String> windows = new ArrayList<String>(CharDataMap.keySet());
+        windows.addAll(CharCountMap.keySet());
+        if (contextTrie != null) windows.addAll(contextTrie.contexts(windowLength).keySet());
+        if (packedWindows != null) {
+            for (int w = 0; w < packedWindows.getSize(); w++) windows.add(packedWindows.window(w));
+        }
+        return windows.toArray(new String[0]);
+    }
+
+    // Returns the sampling table of the given window, or null if there is no such window.
+    SamplingTable samplingTable(String window) {
+        if (contextTrie != null) {
+            int context = contextTrie.get(window);
+            return (context < 0) ? null : contextTrie.samplingTable(context);
+        }
+        if (packedWindows != null) {
+            int w = packedWindows.get(window);
+            return (w < 0) ? null : packedWindows.samplingTable(w);
+        }
+        WindowIndex<Object> index = samplingIndex();
+        return samplingTable(index, window.toCharArray(), 0, index.keyOf(window));
+    }
+
+    // Returns the sampling table of the window that starts at the given position of the given
+    // text, whose key is the given key, compiling it if needed; null if there is no such window.
+    private SamplingTable samplingTable(WindowIndex<Object> index, char[] text, int start, long key) {
+        Object value = index.get(text, start, key);
+        if (value == null || value instanceof SamplingTable) return (SamplingTable) value;
+        return compile(index, text, start, key);
+    }
+
+    // Compiles the sampling table of the window that starts at the given position of the given
+    // text, unless another thread just did, and replaces the successors of the window with it.
+    private synchronized SamplingTable compile(WindowIndex<Object> index, char[] text, int start, long key) {
+        Object value = index.get(text, start, key);
+        if (value instanceof SamplingTable) return (SamplingTable) value;
+        SamplingTable table = (value instanceof List) ? new SamplingTable((List) value)
+                : new SamplingTable((CharCountTable) value);
+        index.replace(text, start, key, table);
+        metrics.compiled(table.getSize());
+        return table;
+    }
+
+    // Returns the index of the windows of this model by key, compiling this model if needed.
+    private WindowIndex<Object> samplingIndex() {
+        WindowIndex<Object> index = samplingIndex;
+        if (index == null || dirty) {
+            synchronized (this) {
+                compile();
+                index = samplingIndex;
+            }
+        }
+        return index;
+    }
+
+    // Checks if this model uses compact successor tables.
+    boolean isCompact() {
+        return compactSuccessors;
+    }
+
+    // Checks if this model backs off to shorter windows.
+    boolean isBackoff() {
+        return backoff;
+    }
+
+    // Checks if this model can generate a text from the given initial text: the initial text
+    // must have a whole window, unless this model backs off to shorter windows.
+    boolean canGenerateFrom(String initialText) {
+        return backoff || initialText.length() >= windowLength;
+    }
+
+    // Computes and sets the probabilities (p and cp fields) of all the
+	// characters in the given list (if the list changed since they were last computed). */
+	public void calculateProbabilities(List probs) {				
+        probs.computeProbabilities();
 	}
     //
 
     // Returns a random character from the given probabilities list.
 	public char getRandomChar(List probs) {
+        probs.computeProbabilities();
         double p = randomGenerator.nextDouble();
         double cumulativeProbability = 0.0;
-        for (int i = 0; i < probs.getSize(); i++) {
-            cumulativeProbability += probs.get(i).p;
+        for (CharData cd : probs) {
+            cumulativeProbability += cd.p;
             if (p <= cumulativeProbability) {
-                return probs.get(i).chr;
+                return cd.chr;
             }
         }
         return ' ';
 	}
 
+    // Returns a random character from the given sampling table.
+    // Uses the sampler of this model (by default, draws the same characters
+    // as getRandomChar(List) does for the same list and seed).
+    public char getRandomChar(SamplingTable table) {
+        return sampler.sample(table, randomGenerator);
+    }
+
     /**
 	 * Generates a random text, based on the probabilities that were learned during training. 
+	 * Uses the random number generator of this model, so calls from different threads
+	 * should use generate(initialText, textLength, random) instead.
 	 * @param initialText - text to start with. If initialText's last substring of size numberOfLetters
 	 * doesn't appear as a key in Map, we generate no text and return only the initial text. 
 	 * @param numberOfLetters - the size of text to generate
 	 * @return the generated text
 	 */
 	public String generate(String initialText, int textLength) {
-        StringBuilder generatedText = new StringBuilder(initialText);
-        for (int i = 0; i < textLength; i++) {
-            String window = generatedText.substring(generatedText.length() - windowLength);
-            if (!CharDataMap.containsKey(window)) break;
-            List charList = CharDataMap.get(window);
-            calculateProbabilities(charList);
-            char nextChar = getRandomChar(charList);
-            generatedText.append(nextChar);
+        return generate(initialText, textLength, randomGenerator);
+	}
+
+    /** Generates a random text, like generate(initialText, textLength), using the given random
+     *  number generator instead of the generator of this model. A trained model is not modified
+     *  by this method, so any number of threads can call it at the same time on the same model,
+     *  each with its own generator (for example, a SplittableRandom split from a shared one). */
+    public String generate(String initialText, int textLength, RandomGenerator random) {
+        if (textLength <= 0) return initialText;
+        StringBuilder generatedText = new StringBuilder(initialText.length() + textLength);
+        try {
+            generate(initialText, textLength, random, generatedText);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen with a StringBuilder
         }
         return generatedText.toString();
-	}
+    }
+
+    /** Generates a random text, like generate(initialText, textLength, random), and writes it to
+     *  the given output (for example, a Writer) one character at a time, as it is generated:
+     *  first the initial text, then every generated character. The text is not kept in memory,
+     *  so a text of any length (up to Long.MAX_VALUE characters) can be generated in constant
+     *  memory. A Writer that blocks until its characters are sent slows down the generation.
+     *  @throws IOException if writing to the output fails; generation then stops */
+    public void generate(String initialText, long textLength, RandomGenerator random, Appendable out)
+            throws IOException {
+        if (textLength <= 0) {
+            out.append(initialText);
+            return;
+        }
+        if (contextTrie != null) {
+            generateFromTrie(initialText, textLength, random, out);
+            return;
+        }
+        if (packedWindows != null) {
+            generateFromPacked(initialText, textLength, random, out);
+            return;
+        }
+        long startTime = System.nanoTime();
+        ModelMetrics metrics = this.metrics;
+        WindowIndex<Object> index = samplingIndex();
+        long key = index.keyOf(initialText.substring(initialText.length() - windowLength));
+        out.append(initialText);
+        // The last generated characters, and the key of the last window, rolled by one character
+        // per step. When the buffer is full, its last window is moved back to its beginning.
+        char[] buffer = new char[(int) Math.min(Math.max(windowLength * 2, 1024), windowLength + Math.min(textLength, 1024))];
+        int length = windowLength;
+        initialText.getChars(initialText.length() - windowLength, initialText.length(), buffer, 0);
+        long i = 0;
+        for (; i < textLength; i++) {
+            if (length == buffer.length) {
+                System.arraycopy(buffer, length - windowLength, buffer, 0, windowLength);
+                length = windowLength;
+            }
+            int start = length - windowLength;
+            SamplingTable table = samplingTable(index, buffer, start, key);
+            if (table == null) break;
+            char nextChar = sampler.sample(table, random);
+            metrics.sampled(table.getSize());
+            buffer[length++] = nextChar;
+            key = index.roll(key, buffer[start], nextChar);
+            out.append(nextChar);
+        }
+        metrics.generated(i, System.nanoTime() - startTime, i < textLength);
+    }
+
+    // Generates a random text from the context trie of this model, advancing the current window
+    // by one character per generated character. A variable-order model starts from, and backs
+    // off to, the longest window that has successors; otherwise, generation stops, as with a map,
+    // when the current window has no successors.
+    private void generateFromTrie(String initialText, long textLength, RandomGenerator random, Appendable out)
+            throws IOException {
+        long startTime = System.nanoTime();
+        ModelMetrics metrics = this.metrics;
+        int context = backoff ? contextTrie.find(initialText)
+                : contextTrie.get(initialText.substring(initialText.length() - windowLength));
+        out.append(initialText);
+        long i = 0;
+        for (; i < textLength; i++) {
+            if (backoff) context = contextTrie.backoff(context);
+            if (context < 0) break;
+            SamplingTable table = contextTrie.samplingTable(context);
+            if (table.getSize() == 0) break;
+            char nextChar = sampler.sample(table, random);
+            metrics.sampled(table.getSize());
+            out.append(nextChar);
+            context = contextTrie.next(context, nextChar);
+        }
+        metrics.generated(i, System.nanoTime() - startTime, i < textLength);
+    }
+
+    // Generates a random text from the packed windows of this model, advancing the current
+    // window by one character per generated character, without creating a String.
+    private void generateFromPacked(String initialText, long textLength, RandomGenerator random, Appendable out)
+            throws IOException {
+        long startTime = System.nanoTime();
+        ModelMetrics metrics = this.metrics;
+        int window = packedWindows.get(initialText.substring(initialText.length() - windowLength));
+        out.append(initialText);
+        long i = 0;
+        for (; i < textLength && window >= 0; i++) {
+            SamplingTable table = packedWindows.samplingTable(window);
+            char nextChar = sampler.sample(table, random);
+            metrics.sampled(table.getSize());
+            out.append(nextChar);
+            window = packedWindows.next(window, nextChar);
+        }
+        metrics.generated(i, System.nanoTime() - startTime, i < textLength);
+    }
+
+    /** Generates a random text, like generate(initialText, textLength), with a random number
+     *  generator of its own, seeded with the given seed value. Gives the same text as the first
+     *  call to generate on a model constructed with the same seed value. Thread-safe. */
+    public String generate(String initialText, int textLength, long seed) {
+        return generate(initialText, textLength, new Random(seed));
+    }
+
+    /** Generates a batch of random texts, using the threads of the common fork/join pool.
+     *  See generateAll(initialTexts, textLengths, seeds, pool). */
+    public String[] generateAll(String[] initialTexts, int[] textLengths, long[] seeds) {
+        return generateAll(initialTexts, textLengths, seeds, ForkJoinPool.commonPool());
+    }
+
+    /** Generates a batch of random texts, using the threads of the given fork/join pool.
+     *  The i'th text is the same as generate(initialTexts[i], textLengths[i], seeds[i]),
+     *  and the texts are returned in the order of their prompts. The model is compiled once
+     *  for the whole batch, before the texts are generated in parallel (see GenerationTask). */
+    public String[] generateAll(String[] initialTexts, int[] textLengths, long[] seeds, ForkJoinPool pool) {
+        int n = initialTexts.length;
+        if (textLengths.length != n || seeds.length != n) {
+            throw new IllegalArgumentException("Batch arrays of different lengths: "
+                    + n + ", " + textLengths.length + ", " + seeds.length);
+        }
+        if (contextTrie == null && packedWindows == null) samplingIndex();
+        String[] results = new String[n];
+        pool.invoke(new GenerationTask(this, initialTexts, textLengths, seeds, results, 0, n));
+        return results;
+    }
 
     /** Returns a string representing the map of this language model. */
 	public String toString() {
@@ -98,10 +890,54 @@ public class LanguageModel {
 			List keyProbs = CharDataMap.get(key);
 			str.append(key + " : " + keyProbs + "\n");
 		}
+		for (String key : CharCountMap.keySet()) {
+			str.append(key + " : " + CharCountMap.get(key) + "\n");
+		}
+		if (contextTrie != null) {
+			LinkedHashMap<String, Integer> contexts = contextTrie.contexts(windowLength);
+			for (String key : contexts.keySet()) {
+				str.append(key + " : " + contextTrie.toString(contexts.get(key)) + "\n");
+			}
+		}
+		if (packedWindows != null) {
+			for (int w = 0; w < packedWindows.getSize(); w++) {
+				str.append(packedWindows.window(w) + " : " + packedWindows.toString(w) + "\n");
+			}
+		}
 		return str.toString();
 	}
 
-    public static void main(String[] args) {
-		
+    /** Saves or serves trained models:
+     *  <pre>
+     *  java LanguageModel save windowLength corpus snapshot   trains a model, and saves it
+     *  java LanguageModel serve port name=snapshot ...         serves saved models over HTTP
+     *  </pre>
+     *  (see GenerationServer). */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("save")) {
+            LanguageModel model = new LanguageModel(Integer.parseInt(args[1]));
+            model.train(args[2]);
+            model.save(Path.of(args[3]));
+        } else if (args.length >= 3 && args[0].equals("serve")) {
+            LinkedHashMap<String, LanguageModel> models = new LinkedHashMap<String, LanguageModel>();
+            for (int i = 2; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                if (eq <= 0) {
+                    printUsage();
+                    return;
+                }
+                models.put(args[i].substring(0, eq), load(Path.of(args[i].substring(eq + 1))));
+            }
+            GenerationServer server = new GenerationServer(new InetSocketAddress(Integer.parseInt(args[1])), models);
+            server.start();
+            System.out.println("Serving " + models.keySet() + " on port " + server.getPort());
+        } else {
+            printUsage();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java LanguageModel save windowLength corpus snapshot");
+        System.out.println("       java LanguageModel serve port name=snapshot ...");
     }
 }
@@ -1,6 +1,20 @@
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.random.RandomGenerator;
 
 public class LanguageModelTester {
         public static void main(String[] args) {
@@ -19,11 +33,87 @@ public class LanguageModelTester {
             case "generate":
                 result = testGenerate();
                 break;
+            case "trainParallel":
+                result = testTrainParallel();
+                break;
+            case "saveLoad":
+                result = testSaveLoad();
+                break;
+            case "backoff":
+                result = testBackoff();
+                break;
+            case "generateStream":
+                result = testGenerateStream();
+                break;
+            case "generateAll":
+                result = testGenerateAll();
+                break;
+            case "metrics":
+                result = testMetrics();
+                break;
+            case "update":
+                result = testUpdate();
+                break;
+            case "prune":
+                result = testPrune();
+                break;
+            case "countSampler":
+                result = testCountSampler();
+                break;
+            case "packedWindows":
+                result = testPackedWindows();
+                break;
+            case "aliasSampler":
+                result = testAliasSampler();
+                break;
+            case "mappedReader":
+                result = testMappedReader();
+                break;
+            case "trieStorage":
+                result = testTrieStorage();
+                break;
+            case "binarySearchSampler":
+                result = testBinarySearchSampler();
+                break;
+            case "settings":
+                result = testSettings();
+                break;
+            case "compactSuccessors":
+                result = testCompactSuccessors();
+                break;
+            case "scannerInput":
+                result = testScannerInput();
+                break;
+            case "offHeap":
+                result = testOffHeap();
+                break;
+            case "server":
+                result = testServer();
+                break;
             case "all":
                 result = testCalculateProbabilities();
                 result = result && testGetRandomChar();
                 result = result && testTrain();
                 result = result && testGenerate();
+                result = result && testTrainParallel();
+                result = result && testSaveLoad();
+                result = result && testBackoff();
+                result = result && testGenerateStream();
+                result = result && testGenerateAll();
+                result = result && testMetrics();
+                result = result && testUpdate();
+                result = result && testPrune();
+                result = result && testCountSampler();
+                result = result && testPackedWindows();
+                result = result && testAliasSampler();
+                result = result && testMappedReader();
+                result = result && testTrieStorage();
+                result = result && testBinarySearchSampler();
+                result = result && testSettings();
+                result = result && testCompactSuccessors();
+                result = result && testScannerInput();
+                result = result && testOffHeap();
+                result = result && testServer();
                 break;
             default:
                 break;
@@ -166,6 +256,603 @@ public class LanguageModelTester {
         return res;
     }
 
+    // Test method for the trainParallel() method
+    public static boolean testTrainParallel() {
+        boolean result = true;
+        int [] windowLengths = {1, 3, 7};
+        for (int i = 0; i < windowLengths.length; i++) {
+            LanguageModel sequential = new LanguageModel(windowLengths[i], 20);
+            sequential.train("shakespeareinlove.txt");
+            LanguageModel parallel = new LanguageModel(windowLengths[i], 20);
+            parallel.trainParallel("shakespeareinlove.txt");
+            boolean res = sequential.generate("Romeo, ", 500).equals(parallel.generate("Romeo, ", 500))
+                    && sequential.toString().equals(parallel.toString());
+            if (!res){
+                System.out.println("FAIL with windowLength = " + windowLengths[i]);
+            }
+            result = result && res;
+        }
+        // Successor orders that depend on the order of the updates
+        for (List.Order order : new List.Order[] {List.Order.MOVE_TO_FRONT, List.Order.BY_COUNT}) {
+            LanguageModel sequential = new LanguageModel(3, 20);
+            sequential.setSuccessorOrder(order);
+            sequential.train("originofspecies.txt");
+            LanguageModel parallel = new LanguageModel(3, 20);
+            parallel.setSuccessorOrder(order);
+            parallel.trainParallel("originofspecies.txt");
+            boolean res = sequential.toString().equals(parallel.toString());
+            if (!res){
+                System.out.println("FAIL with order = " + order);
+            }
+            result = result && res;
+        }
+        return result;
+    }
+
+    // Test method for the save() and load() methods
+    public static boolean testSaveLoad() {
+        boolean res = true;
+        try {
+            LanguageModel languageModel = new LanguageModel(7, 20);
+            languageModel.train("originofspecies.txt");
+            File file = File.createTempFile("model", ".lms");
+            file.deleteOnExit();
+            languageModel.save(file.toPath());
+            LanguageModel loaded = LanguageModel.load(file.toPath(), 20);
+            String expected = languageModel.generate("Natural", 172);
+            res = expected.equals(loaded.generate("Natural", 172));
+            ModelSnapshot snapshot = ModelSnapshot.map(file.toPath());
+            res = res && expected.equals(snapshot.generate("Natural", 172, new Random(20)));
+            snapshot.close();
+            // A closed snapshot can no longer be used
+            try {
+                snapshot.getSize(0);
+                res = false;
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            // A model that backs off cannot be saved, since the snapshot would lose its shorter
+            // windows; the file is left untouched
+            LanguageModel backoffModel = new LanguageModel(7, 20);
+            backoffModel.setBackoff(true);
+            backoffModel.train("originofspecies.txt");
+            long length = file.length();
+            res = res && throwsIllegalState(() -> {
+                try {
+                    backoffModel.save(file.toPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            res = res && file.length() == length;
+            res = res && throwsIllegalState(backoffModel::toOffHeap);
+            res = res && backoffModel.generate("Xylophonic", 500).length() == 510;
+        } catch (Exception e) {
+            res = false;
+        }
+        if (!res){
+            System.out.println("SaveLoad Test failed");
+        }
+        return res;
+    }
+
+    // Test method for variable-order models (setBackoff)
+    public static boolean testBackoff() {
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.setBackoff(true);
+        languageModel.train("originofspecies.txt");
+        // Without backoff, the same text as a fixed-order model
+        String generatedText = languageModel.generate("Natural", 172);
+        String expectedGeneratedText = "Natural selection, how is it possible, generally much changed\n"+
+        "simultaneous rotation, when the importance of Batrachians, 393.\n"+
+        "  Batrachians (frogs, toads, newts) have to modified ";
+        boolean res = stringEqualsNoSpaces(generatedText, expectedGeneratedText);
+        // With backoff, never stops early, even from an unseen window
+        res = res && languageModel.generate("Xylophonic", 1000).length() == 1010;
+        if (!res){
+            System.out.println("Backoff Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testGenerateStream() {
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.train("originofspecies.txt");
+        // Longer than the buffer of the generator, so that its windows wrap around
+        StringWriter out = new StringWriter();
+        boolean res = true;
+        try {
+            languageModel.generate("Natural", 5000, new Random(20), out);
+        } catch (IOException e) {
+            res = false;
+        }
+        res = res && out.toString().equals(languageModel.generate("Natural", 5000));
+        // A text of unbounded length, until the output refuses more characters
+        StringBuilder sink = new StringBuilder();
+        Appendable limited = new Appendable() {
+            public Appendable append(CharSequence csq) throws IOException {
+                for (int i = 0; i < csq.length(); i++) append(csq.charAt(i));
+                return this;
+            }
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                return append(csq.subSequence(start, end));
+            }
+            public Appendable append(char c) throws IOException {
+                if (sink.length() == 5000) throw new IOException("Full");
+                sink.append(c);
+                return this;
+            }
+        };
+        try {
+            languageModel.generate("Natural", Long.MAX_VALUE, new Random(20), limited);
+            res = false;
+        } catch (IOException e) {
+            res = res && sink.toString().equals(out.toString().substring(0, 5000));
+        }
+        // Nothing to generate: only the initial text, even if it is shorter than a window
+        res = res && languageModel.generate("The", -1).equals("The")
+                && languageModel.generate("Natural", 0).equals("Natural");
+        if (!res){
+            System.out.println("GenerateStream Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testGenerateAll() {
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.train("originofspecies.txt");
+        String[] prompts = {"Natural", "The ori", "Natural", "species", "The ori"};
+        int n = 200;
+        String[] initialTexts = new String[n];
+        int[] textLengths = new int[n];
+        long[] seeds = new long[n];
+        for (int i = 0; i < n; i++) {
+            initialTexts[i] = prompts[i % prompts.length];
+            textLengths[i] = 10 + i;
+            seeds[i] = i;
+        }
+        String[] texts = languageModel.generateAll(initialTexts, textLengths, seeds);
+        boolean res = true;
+        for (int i = 0; i < n; i++) {
+            res = res && texts[i].equals(languageModel.generate(initialTexts[i], textLengths[i], seeds[i]));
+        }
+        if (!res){
+            System.out.println("GenerateAll Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testMetrics() {
+        LanguageModel languageModel = new LanguageModel(2, 20);
+        JmxModelMetrics metrics = new JmxModelMetrics();
+        languageModel.setMetrics(metrics);
+        languageModel.train(new java.io.StringReader("committee_"));
+        // The 8 windows co, om, mm, mi, it, tt, te and ee, all different
+        boolean res = metrics.getTrainedChars() == 10 && metrics.getWindowsSeen() == 8
+                && metrics.getWindowsCreated() == 8;
+        languageModel.generate("co", 100);
+        // Stops after ee_, since the window e_ has no successors
+        res = res && metrics.getGenerateCalls() == 1 && metrics.getLookupMisses() == 1;
+        // The table of every window reached is compiled once, however often it is used
+        res = res && metrics.getCompiledTables() == 8 && metrics.getSuccessorListLengthMax() == 1;
+        languageModel.compile();
+        languageModel.generate("co", 100);
+        res = res && metrics.getCompiledTables() == 8;
+        res = res && metrics.getSuccessorsPerSampleMean() == 1.0;
+        // Only the new windows e_ and _e (reached after ee) are compiled
+        languageModel.update("eo");
+        languageModel.generate("co", 100);
+        res = res && metrics.getCompiledTables() == 10;
+        // Models stored in a trie or packed windows count the same windows, and compile each table once
+        for (int storage = 0; storage < 2; storage++) {
+            LanguageModel other = new LanguageModel(2, 20);
+            if (storage == 0) other.setTrieStorage(true);
+            else other.setPackedWindows(true);
+            JmxModelMetrics otherMetrics = new JmxModelMetrics();
+            other.setMetrics(otherMetrics);
+            other.train(new java.io.StringReader("committee_"));
+            other.generate("co", 100);
+            // The trie also compiles the empty table of e_, where generation stops
+            long compiled = otherMetrics.getCompiledTables();
+            res = res && otherMetrics.getWindowsSeen() == 8 && compiled == 8 + (1 - storage);
+            other.generate("co", 100);
+            res = res && otherMetrics.getCompiledTables() == compiled;
+        }
+        if (!res){
+            System.out.println("Metrics Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testUpdate() {
+        String text = new In("originofspecies.txt").readAll();
+        LanguageModel trained = new LanguageModel(7, 20);
+        trained.train(new java.io.StringReader(text));
+        // The same text, given in three parts, the last ones after the model was compiled
+        LanguageModel updated = new LanguageModel(7, 20);
+        updated.update(text.substring(0, 100000));
+        updated.compile();
+        updated.update(text.substring(100000, 100003));
+        updated.update(text.substring(100003));
+        boolean res = updated.generate("Natural", 1000).equals(trained.generate("Natural", 1000));
+        res = res && updated.toString().length() == trained.toString().length();
+        if (!res){
+            System.out.println("Update Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testPrune() {
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.train("originofspecies.txt");
+        String generatedText = languageModel.generate("Natural", 1000, 5L);
+        // A minimal count of 1 removes nothing
+        boolean res = languageModel.prune(1).getWindowsRemoved() == 0
+                && languageModel.generate("Natural", 1000, 5L).equals(generatedText);
+        PruneReport report = languageModel.prune(2);
+        res = res && report.getWindowsRemoved() > 0 && report.getBytesReclaimed() > 0;
+        // Never reaches a removed window, so never stops early
+        for (long seed = 0; seed < 20; seed++) {
+            res = res && languageModel.generate("Natural", 1000, seed).length() == 1007;
+        }
+        // A model stored in a trie cannot have a budget
+        LanguageModel trieModel = new LanguageModel(7, 20);
+        trieModel.setTrieStorage(true);
+        trieModel.setWindowBudget(1000);
+        try {
+            trieModel.train("originofspecies.txt");
+            res = false;
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        if (!res){
+            System.out.println("Prune Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testCountSampler() {
+        List list = new List();
+        String str = "committee_";
+        for (int i = str.length() - 1; i >= 0; i--) list.update(str.charAt(i));
+        SamplingTable table = new SamplingTable(list);
+        // Every character is drawn for as many values as its count
+        String drawn = "";
+        for (int r = 0; r < table.getTotal(); r++) drawn += table.charAtCount(r);
+        boolean res = drawn.equals("committee_");
+        // Scanning and binary searching draw the same characters
+        Random scanRandom = new Random(20);
+        Random searchRandom = new Random(20);
+        CountSampler scan = new CountSampler(Integer.MAX_VALUE);
+        CountSampler search = new CountSampler(0);
+        for (int i = 0; i < 1000; i++) {
+            res = res && scan.sample(table, scanRandom) == search.sample(table, searchRandom);
+        }
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.setSampler(new CountSampler());
+        languageModel.train("originofspecies.txt");
+        res = res && languageModel.generate("Natural", 1000).length() == 1007;
+        if (!res){
+            System.out.println("CountSampler Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testPackedWindows() {
+        LanguageModel languageModel = new LanguageModel(9, 20);
+        languageModel.train("originofspecies.txt");
+        LanguageModel packedModel = new LanguageModel(9, 20);
+        packedModel.setPackedWindows(true);
+        packedModel.train("originofspecies.txt");
+        // Packing the windows does not change the generated texts
+        boolean res = packedModel.generate("Natural S", 1000).equals(languageModel.generate("Natural S", 1000));
+        for (long seed = 0; seed < 10; seed++) {
+            res = res && packedModel.generate("Natural S", 1000, seed).equals(languageModel.generate("Natural S", 1000, seed));
+        }
+        // Windows of 32 characters have 2 bits per character, so an alphabet of 4 characters
+        LanguageModel smallModel = new LanguageModel(32, 20);
+        smallModel.setPackedWindows(true);
+        smallModel.update("abcdabcdbbcaddacbabcdabcdddcbaabcdacb");
+        String before = smallModel.toString();
+        String generated = smallModel.generate("abcdabcdbbcaddacbabcdabcdddcbaab", 100, 5);
+        res = res && throwsIllegalState(() -> smallModel.update("cdabe"));
+        // The text with too many characters is not added at all
+        res = res && smallModel.toString().equals(before)
+                && smallModel.generate("abcdabcdbbcaddacbabcdabcdddcbaab", 100, 5).equals(generated);
+        // A map that refuses a character is left as it was
+        PackedWindowMap map = new PackedWindowMap(32);
+        for (char chr : "abcdabcdbbcaddacbabcdabcdddcbaabcd".toCharArray()) map.add(chr);
+        int size = map.getSize();
+        int edges = map.getEdgeCount();
+        res = res && throwsIllegalState(() -> map.add('e'));
+        res = res && map.getSize() == size && map.getEdgeCount() == edges && map.getAlphabetSize() == 4;
+        map.add('a');
+        res = res && map.getSize() == size + 1 && map.getEdgeCount() == edges + 1;
+        if (!res){
+            System.out.println("PackedWindows Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testAliasSampler() {
+        AliasSampler sampler = new AliasSampler();
+        Random random = new Random(20);
+        // The characters are drawn in proportion to their counts (7:3:1)
+        SamplingTable table = new SamplingTable(new char[] {'a', 'b', 'c'}, new int[] {7, 3, 1});
+        int draws = 110000;
+        int[] drawn = new int[3];
+        for (int i = 0; i < draws; i++) drawn[sampler.sample(table, random) - 'a']++;
+        boolean res = Math.abs(drawn[0] - 70000) < 1000
+                && Math.abs(drawn[1] - 30000) < 1000
+                && Math.abs(drawn[2] - 10000) < 1000;
+        // A table of a single character always returns it
+        SamplingTable single = new SamplingTable(new char[] {'z'}, new int[] {5});
+        for (int i = 0; i < 1000; i++) res = res && sampler.sample(single, random) == 'z';
+        if (!res){
+            System.out.println("AliasSampler Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testMappedReader() {
+        boolean res = true;
+        try {
+            // ASCII runs, and UTF-8 sequences of 2, 3 and 4 bytes (a surrogate pair)
+            File file = File.createTempFile("mapped", ".txt");
+            file.deleteOnExit();
+            String text = "";
+            for (int i = 0; i < 50; i++) text += "ab\u00e9c\u20ac\ud83d\ude00d" + i;
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                writer.write(text);
+            }
+            String expected = new In(file).readAll();
+            res = expected.equals(text);
+            // Small mappings cut sequences, and small buffers cut surrogate pairs
+            int[] mappings = {4, 5, 7, 1 << 20};
+            int[] bufferSizes = {1, 3, 7, 1024};
+            for (int mapping : mappings) {
+                for (int bufferSize : bufferSizes) {
+                    StringBuilder actual = new StringBuilder();
+                    try (MappedReader reader = new MappedReader(file.toPath(), false, mapping)) {
+                        char[] buffer = new char[bufferSize];
+                        int read;
+                        while ((read = reader.read(buffer, 0, buffer.length)) >= 0) actual.append(buffer, 0, read);
+                    }
+                    if (!actual.toString().equals(expected)) {
+                        System.out.println("Mapping " + mapping + ", buffer " + bufferSize + ": " + actual);
+                        res = false;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            res = false;
+        }
+        if (!res){
+            System.out.println("MappedReader Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testTrieStorage() {
+        boolean res = true;
+        for (int windowLength = 0; windowLength <= 10; windowLength += 2) {
+            LanguageModel languageModel = new LanguageModel(windowLength, 20);
+            languageModel.train("originofspecies.txt");
+            LanguageModel trieModel = new LanguageModel(windowLength, 20);
+            trieModel.setTrieStorage(true);
+            trieModel.train("originofspecies.txt");
+            // Storing the windows in a trie does not change the generated texts
+            String initialText = "Natural Selection".substring(0, windowLength);
+            res = res && trieModel.generate(initialText, 500).equals(languageModel.generate(initialText, 500));
+            for (long seed = 0; seed < 5; seed++) {
+                res = res && trieModel.generate(initialText, 500, seed).equals(languageModel.generate(initialText, 500, seed));
+            }
+        }
+        if (!res){
+            System.out.println("TrieStorage Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testBinarySearchSampler() {
+        boolean res = true;
+        Random tableRandom = new Random(20);
+        LinearSampler linear = new LinearSampler();
+        BinarySearchSampler binarySearch = new BinarySearchSampler();
+        // Tables of 1 to 40 characters with random counts, each drawn from with the same seed
+        for (int size = 1; size <= 40; size++) {
+            char[] chars = new char[size];
+            int[] counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                chars[i] = (char) ('!' + i);
+                counts[i] = 1 + tableRandom.nextInt(size == 1 ? 1 : 100);
+            }
+            SamplingTable table = new SamplingTable(chars, counts);
+            Random linearRandom = new Random(size);
+            Random binarySearchRandom = new Random(size);
+            for (int i = 0; i < 10000; i++) {
+                res = res && linear.sample(table, linearRandom) == binarySearch.sample(table, binarySearchRandom);
+            }
+            // Including at the boundaries of the cumulative probabilities
+            for (int i = 0; i < size; i++) {
+                double r = table.cp[i];
+                res = res && table.charAtProbability(r) == binarySearch.sample(table, new FixedDouble(r));
+            }
+        }
+        if (!res){
+            System.out.println("BinarySearchSampler Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testCompactSuccessors() {
+        boolean res = true;
+        for (int windowLength : new int[] {1, 3, 7}) {
+            LanguageModel languageModel = new LanguageModel(windowLength, 20);
+            languageModel.train("originofspecies.txt");
+            LanguageModel compactModel = new LanguageModel(windowLength, 20);
+            compactModel.setCompactSuccessors(true);
+            compactModel.train("originofspecies.txt");
+            // CharCountTable.toString shows the probabilities, List.toString only once computed
+            for (List list : languageModel.CharDataMap.values()) languageModel.calculateProbabilities(list);
+            // Storing the successors in CharCountTables changes neither the model nor the texts
+            String initialText = "Natural".substring(0, windowLength);
+            res = res && compactModel.toString().equals(languageModel.toString())
+                    && compactModel.generate(initialText, 1000).equals(languageModel.generate(initialText, 1000));
+        }
+        // The tables of short windows have more successors than are searched linearly
+        LanguageModel compactModel = new LanguageModel(1, 20);
+        compactModel.setCompactSuccessors(true);
+        compactModel.train("originofspecies.txt");
+        res = res && compactModel.CharCountMap.get("e").getSize() > CharCountTable.LINEAR_LIMIT;
+        if (!res){
+            System.out.println("CompactSuccessors Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testScannerInput() {
+        String text = new In("originofspecies.txt").readAll();
+        // An input stream created from a scanner is read in chunks, not as a whole
+        In input = new In(new Scanner(text));
+        StringBuilder read = new StringBuilder();
+        char[] buffer = new char[20000];
+        boolean res = true;
+        int n;
+        while ((n = input.readChars(buffer, 0, buffer.length)) >= 0) {
+            res = res && n <= 8192;
+            read.append(buffer, 0, n);
+        }
+        res = res && read.toString().equals(text);
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.train(new In(new Scanner(text)));
+        LanguageModel expectedModel = new LanguageModel(7, 20);
+        expectedModel.train("originofspecies.txt");
+        res = res && languageModel.generate("Natural", 1000).equals(expectedModel.generate("Natural", 1000));
+        if (!res){
+            System.out.println("ScannerInput Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testOffHeap() {
+        boolean res = true;
+        for (boolean compact : new boolean[] {false, true}) {
+            LanguageModel languageModel = new LanguageModel(7, 20);
+            languageModel.setCompactSuccessors(compact);
+            languageModel.train("originofspecies.txt");
+            ModelSnapshot snapshot = languageModel.toOffHeap();
+            for (long seed = 0; seed < 5; seed++) {
+                res = res && snapshot.generate("Natural", 1000, new Random(seed))
+                        .equals(languageModel.generate("Natural", 1000, seed));
+            }
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                res = false;
+            }
+            // A closed snapshot can no longer be used
+            res = res && throwsIllegalState(() -> snapshot.generate("Natural", 10, new Random(20)));
+            res = res && throwsIllegalState(() -> snapshot.charAt(0, 0));
+        }
+        if (!res){
+            System.out.println("OffHeap Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testSettings() {
+        boolean res = true;
+        // Storage settings after training
+        LanguageModel trained = new LanguageModel(3, 20);
+        trained.train("originofspecies.txt");
+        res = res && throwsIllegalState(() -> trained.setCompactSuccessors(true));
+        res = res && throwsIllegalState(() -> trained.setTrieStorage(true));
+        // Storage settings that do not work together
+        LanguageModel packed = new LanguageModel(3, 20);
+        packed.setPackedWindows(true);
+        res = res && throwsIllegalState(() -> packed.setBackoff(true));
+        LanguageModel compact = new LanguageModel(3, 20);
+        compact.setCompactSuccessors(true);
+        res = res && throwsIllegalState(() -> compact.setTrieStorage(true));
+        res = res && throwsIllegalState(() -> compact.setSuccessorOrder(List.Order.BY_COUNT));
+        // Settings that work together
+        LanguageModel backoff = new LanguageModel(3, 20);
+        backoff.setTrieStorage(true);
+        backoff.setBackoff(true);
+        if (!res){
+            System.out.println("Settings Test failed");
+        }
+        return res;
+    }
+
+    public static boolean testServer() {
+        LanguageModel languageModel = new LanguageModel(7, 20);
+        languageModel.train("originofspecies.txt");
+        boolean res = true;
+        GenerationServer server = null;
+        try {
+            server = new GenerationServer(new InetSocketAddress("localhost", 0), Map.of("origin", languageModel));
+            server.start();
+            String url = "http://localhost:" + server.getPort();
+            // Longer than the flush interval of the server
+            res = httpGet(url + "/generate?model=origin&prompt=Natural&length=1000&seed=5")
+                    .equals("200 " + languageModel.generate("Natural", 1000, 5));
+            res = res && httpGet(url + "/generate?model=origin&prompt=Natural&length=ten").startsWith("400 Bad length");
+            res = res && httpGet(url + "/generate?model=origin&prompt=Natural&seed=five").startsWith("400 Bad seed");
+            res = res && httpGet(url + "/generate?model=origin&prompt=Nat&length=10").startsWith("400 Expected");
+            res = res && httpGet(url + "/generate?model=species&prompt=Natural").startsWith("404 Unknown model");
+            res = res && httpGet(url + "/health").equals("200 OK\n");
+        } catch (IOException e) {
+            res = false;
+        } finally {
+            if (server != null) server.stop(0);
+        }
+        if (!res){
+            System.out.println("Server Test failed");
+        }
+        return res;
+    }
+
+    // Returns the status and the body of the response to a GET request of the given URL.
+    private static String httpGet(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        try {
+            int status = connection.getResponseCode();
+            try (InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+                return status + " " + new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static boolean throwsIllegalState(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    // A random number generator that always returns the same double.
+    private static class FixedDouble implements RandomGenerator {
+        private final double value;
+
+        FixedDouble(double value) {
+            this.value = value;
+        }
+
+        public long nextLong() {
+            return 0;
+        }
+
+        public double nextDouble() {
+            return value;
+        }
+    }
+
     private static boolean stringEqualsNoSpaces(String s1, String s2) {
         s1 = s1.replaceAll("\\s+", "");
         s2 = s2.replaceAll("\\s+", "");
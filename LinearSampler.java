@@ -0,0 +1,12 @@
+import java.util.random.RandomGenerator;
+
+/** A sampler that scans the cumulative probabilities of a table from the start.
+ *  Draws exactly the same characters as LanguageModel.getRandomChar(List),
+ *  so seeded models produce the same texts as before. O(n) per draw. */
+public class LinearSampler implements Sampler {
+
+    /** Returns a random character from the given sampling table. */
+    public char sample(SamplingTable table, RandomGenerator random) {
+        return table.charAtProbability(random.nextDouble());
+    }
+}
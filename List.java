@@ -1,20 +1,53 @@
+import java.util.Spliterator;
+import java.util.Spliterators;
+
 /** A linked list of character data objects.
  *  (Actually, a list of Node objects, each holding a reference to a character data object.
  *  However, users of this class are not aware of the Node objects. As far as they are concerned,
  *  the class represents a list of CharData objects. Likwise, the API of the class does not
  *  mention the existence of the Node objects). */
-public class List {
+public class List implements Successors, Iterable<CharData> {
+
+    /** The order of the elements of a list. */
+    public enum Order {
+        /** The last character added first (the default). */
+        INSERTION,
+        /** The last character added or updated first. */
+        MOVE_TO_FRONT,
+        /** By descending count (in no particular order among equal counts);
+         *  a new character, of count 1, is added last. */
+        BY_COUNT
+    }
 
     // Points to the first node in this list
     private Node first;
 
     // The number of elements in this list
     private int size;
+
+    // The order of the elements of this list
+    private final Order order;
+
+    // The sum of the counts of the elements of this list
+    private int total;
+
+    // Whether the list changed since the probabilities of its elements were computed
+    private boolean dirty;
 	
     /** Constructs an empty list. */
     public List() {
+        this(Order.INSERTION);
+    }
+
+    /** Constructs an empty list that keeps its elements in the given order. Under MOVE_TO_FRONT
+     *  and BY_COUNT, frequent characters stay near the beginning of the list, where update
+     *  and the scans of getRandomChar find them sooner. */
+    public List(Order order) {
         first = null;
         size = 0;
+        this.order = order;
+        total = 0;
+        dirty = false;
     }
 
     /** Returns the number of elements in this list. */
@@ -33,6 +66,47 @@ public class List {
         newNode.next = first; 
         first = newNode;
         size++;
+        total++;
+        dirty = true;
+    }
+
+    /** Returns the sum of the counts of the elements of this list. The counts must only be
+     *  changed through the methods of this list, which keep this sum, and mark the probabilities
+     *  of the elements to be computed again. */
+    public int getTotal() {
+        return total;
+    }
+
+    /** Computes the probability (p) and cumulative probability (cp) of every element of this
+     *  list, unless they were already computed and the list did not change since. */
+    public void computeProbabilities() {
+        if (!dirty) return;
+        double cumulativeProbability = 0.0;
+        for (Node current = first; current != null; current = current.next) {
+            current.cp.p = (double) current.cp.count / total;
+            cumulativeProbability += current.cp.p;
+            current.cp.cp = cumulativeProbability;
+        }
+        dirty = false;
+    }
+
+    /** Returns the probability of the given character in this list, or 0 if it is not in it. */
+    public double probabilityOf(char chr) {
+        computeProbabilities();
+        for (Node current = first; current != null; current = current.next) {
+            if (current.cp.chr == chr) return current.cp.p;
+        }
+        return 0;
+    }
+
+    /** Returns the cumulative probability of the given character in this list (the sum of the
+     *  probabilities of the elements up to it), or 0 if it is not in it. */
+    public double cumulativeProbabilityOf(char chr) {
+        computeProbabilities();
+        for (Node current = first; current != null; current = current.next) {
+            if (current.cp.chr == chr) return current.cp.cp;
+        }
+        return 0;
     }
     
     /** GIVE Textual representation of this list. */
@@ -42,7 +116,8 @@ public class List {
         Node current = first;
         builder.append("(");
         while (current != null) {
-            cumulativeProbability += current.cp.p;
+            // The cumulative probabilities are computed already, unless the list changed since
+            cumulativeProbability = dirty ? cumulativeProbability + current.cp.p : current.cp.cp;
             String probability = String.format("%.4f", current.cp.p).replaceAll("0*$", "").replaceAll("(\\.)$", "$1");
             String cumulative = String.format("%.4f", cumulativeProbability).replaceAll("0*$", "").replaceAll("(\\.)$", "$1");
             probability = probability.contains(".") ? probability : probability + ".0";
@@ -76,17 +151,94 @@ public class List {
 
     /** If the given character exists in one of the CharData objects in this list,
      *  increments its counter. Otherwise, adds a new CharData object with the
-     *  given chr to the beginning of this list. */
+     *  given chr to the beginning of this list (to its end, if ordered BY_COUNT). */
     public void update(char chr) {
+        Node prev = null;
+        // Under BY_COUNT, the first node of the run of nodes with the count of current
+        Node runStart = null;
         Node current = first;
         while (current != null) {
+            if (order == Order.BY_COUNT && (runStart == null || runStart.cp.count != current.cp.count)) {
+                runStart = current;
+            }
             if (current.cp.chr == chr) {
                 current.cp.count++;
+                total++;
+                dirty = true;
+                if (order == Order.MOVE_TO_FRONT) {
+                    moveToFront(prev, current);
+                } else if (order == Order.BY_COUNT && runStart != current) {
+                    // Moves the updated character before the others of its old count
+                    CharData cd = current.cp;
+                    current.cp = runStart.cp;
+                    runStart.cp = cd;
+                }
+                return;
+            }
+            prev = current;
+            current = current.next;
+        }
+        if (order == Order.BY_COUNT && prev != null) {
+            prev.next = new Node(new CharData(chr));
+            size++;
+            total++;
+            dirty = true;
+        } else {
+            addFirst(chr);
+        }
+    }
+
+    /** If the given character exists in one of the CharData objects in this list,
+     *  adds the given amount to its counter. Otherwise, adds a new CharData object with
+     *  the given chr and a counter equal to the given amount to the beginning of this list. */
+    public void add(char chr, int count) {
+        Node prev = null;
+        Node current = first;
+        while (current != null) {
+            if (current.cp.chr == chr) {
+                current.cp.count += count;
+                total += count;
+                dirty = true;
+                if (order == Order.MOVE_TO_FRONT) moveToFront(prev, current);
+                if (order == Order.BY_COUNT) sortByCount();
                 return;
             }
+            prev = current;
             current = current.next;
         }
         addFirst(chr);
+        first.cp.count = count;
+        total += count - 1;
+        if (order == Order.BY_COUNT) sortByCount();
+    }
+
+    // Moves the given node, which follows the given previous node (null if it is the first one),
+    // to the beginning of this list.
+    private void moveToFront(Node prev, Node node) {
+        if (prev == null) return;
+        prev.next = node.next;
+        node.next = first;
+        first = node;
+    }
+
+    // Sorts the nodes of this list by descending count, keeping the order of equal counts.
+    private void sortByCount() {
+        Node sorted = null;
+        Node current = first;
+        while (current != null) {
+            Node next = current.next;
+            if (sorted == null || sorted.cp.count < current.cp.count) {
+                current.next = sorted;
+                sorted = current;
+            } else {
+                Node after = sorted;
+                while (after.next != null && after.next.cp.count >= current.cp.count) after = after.next;
+                current.next = after.next;
+                after.next = current;
+            }
+            current = next;
+        }
+        first = sorted;
     }
 
     /** GIVE If the given character exists in one of the CharData objects
@@ -100,6 +252,8 @@ public class List {
                 if (prev == null) first = current.next; 
                 else prev.next = current.next; 
                 size--; 
+                total -= current.cp.count;
+                dirty = true;
                 return true;
             }
             prev = current;
@@ -130,10 +284,12 @@ public class List {
         return arr;
     }
 
-    /** Returns an iterator over the elements in this list, starting at the given index. */
+    /** Returns an iterator over the elements in this list, starting at the given index
+     *  (an iterator with no elements if the index is the size of this list).
+     *  If the index is negative or greater than the size of this list,
+     *  throws an IndexOutOfBoundsException. */
     public ListIterator listIterator(int index) {
-	    // If the list is empty, there is nothing to iterate   
-	    if (size == 0) return null;
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index invalide: " + index);
 	    // Gets the element in position index of this list
 	    Node current = first;
 	    int i = 0;
@@ -144,4 +300,22 @@ public class List {
         // Returns an iterator that starts in that element
 	    return new ListIterator(current);
     }
+
+    /** Returns an iterator over the elements in this list, from the first one. */
+    public ListIterator iterator() {
+        return new ListIterator(first);
+    }
+
+    /** Performs the given operation on the character and count of every element in this list,
+     *  in order, without creating an iterator. */
+    public void forEachCount(CharCountConsumer action) {
+        for (Node current = first; current != null; current = current.next) {
+            action.accept(current.cp.chr, current.cp.count);
+        }
+    }
+
+    /** Returns a spliterator over the elements in this list, which knows their number. */
+    public Spliterator<CharData> spliterator() {
+        return Spliterators.spliterator(iterator(), size, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
 }
@@ -1,10 +1,14 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /** Represents an iterator over a list of CharData objects. */
-public class ListIterator {
+public class ListIterator implements Iterator<CharData> {
 
     // Current position in the list (cursor)
     Node current;
 
-    /** Constructs a list iterator, starting at the given node. */
+    /** Constructs a list iterator, starting at the given node
+     *  (an iterator with no elements if the node is null). */
     public ListIterator(Node node) {
         // Sets the cursor of this iterator to the given node
         current = node;
@@ -14,13 +18,14 @@ public class ListIterator {
     public boolean hasNext() {
         return (current != null);
     }
-  
+
     /** Returns the CharData object of the current element in this iteration,
      *  and advances the cursor to the next element.
-     *  Should be called only if hasNext() is true. */
+     *  Throws a NoSuchElementException if hasNext() is false. */
     public CharData next() {
-        CharData cd = current.cd;
+        if (current == null) throw new NoSuchElementException();
+        CharData cd = current.cp;
         current = current.next;
         return cd;
     }
-}
\ No newline at end of file
+}
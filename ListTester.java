@@ -24,6 +24,15 @@ public class ListTester {
             case "remove":
                 result = testRemove();
                 break;
+            case "iterator":
+                result = testIterator();
+                break;
+            case "order":
+                result = testOrder();
+                break;
+            case "probabilities":
+                result = testProbabilities();
+                break;
             
             case "all":
                 result = testAddFirst();
@@ -32,6 +41,9 @@ public class ListTester {
                 result = result && testGet();
                 result = result && testUpdate();
                 result = result && testRemove();
+                result = result && testIterator();
+                result = result && testOrder();
+                result = result && testProbabilities();
                 break; 
             default:
                 break;
@@ -256,5 +268,96 @@ public class ListTester {
         }
         return true;
     }
-    
+
+    public static boolean testIterator() {
+        boolean result = true;
+        String [] testWords = {"", "a", "committee_", "linked_lists_are_fun"};
+        for (int i = 0; i < testWords.length; i++) {
+            List yourSolution = new List();
+            String w = testWords[i];
+            for (int j = 0; j < w.length(); j++) {
+                yourSolution.update(w.charAt(j));
+            }
+            // The iterator, forEachCount and the spliterator visit the elements in list order
+            StringBuilder iterated = new StringBuilder();
+            for (CharData cd : yourSolution) {
+                iterated.append(cd.chr).append(cd.count);
+            }
+            StringBuilder visited = new StringBuilder();
+            yourSolution.forEachCount((chr, count) -> visited.append(chr).append(count));
+            StringBuilder expected = new StringBuilder();
+            for (int j = 0; j < yourSolution.getSize(); j++) {
+                expected.append(yourSolution.get(j).chr).append(yourSolution.get(j).count);
+            }
+            long streamed = java.util.stream.StreamSupport.stream(yourSolution.spliterator(), false).count();
+            boolean res = iterated.toString().equals(expected.toString())
+                    && visited.toString().equals(expected.toString())
+                    && streamed == yourSolution.getSize()
+                    && !yourSolution.listIterator(yourSolution.getSize()).hasNext();
+            if (!res){
+                System.out.println("Word: " + w + ", expected: " + expected + ", iterated: " + iterated
+                        + ", visited: " + visited + ", streamed: " + streamed);
+            }
+            result = result && res;
+        }
+        if (!result){
+            System.out.println("Iterator Test failed");
+        }
+        return result;
+    }
+
+    public static boolean testOrder() {
+        String w = "committee_m";
+        List insertion = new List();
+        List moveToFront = new List(List.Order.MOVE_TO_FRONT);
+        List byCount = new List(List.Order.BY_COUNT);
+        for (int j = 0; j < w.length(); j++) {
+            insertion.update(w.charAt(j));
+            moveToFront.update(w.charAt(j));
+            byCount.update(w.charAt(j));
+        }
+        boolean result = orderOf(insertion).equals("_etimoc")
+                && orderOf(moveToFront).equals("m_etioc")
+                && orderOf(byCount).equals("mteioc_");
+        if (!result){
+            System.out.println("Order Test failed: " + orderOf(insertion) + " " + orderOf(moveToFront)
+                    + " " + orderOf(byCount));
+        }
+        return result;
+    }
+
+    public static boolean testProbabilities() {
+        List list = new List();
+        String word = "committee_";
+        for (int i = 0; i < word.length(); i++) list.update(word.charAt(i));
+        // The probabilities are computed only when asked for, and toString shows them as they are
+        boolean result = list.getTotal() == 10
+                && list.toString().equals("((_ 1 0. 0.0) (e 2 0. 0.0) (t 2 0. 0.0) (i 1 0. 0.0) (m 2 0. 0.0) (o 1 0. 0.0) (c 1 0. 0.0))");
+        result = result && list.probabilityOf('m') == 0.2 && list.probabilityOf('x') == 0;
+        result = result && Math.abs(list.cumulativeProbabilityOf('t') - 0.5) < 1e-9
+                && Math.abs(list.cumulativeProbabilityOf('c') - 1.0) < 1e-9
+                && list.cumulativeProbabilityOf('x') == 0;
+        result = result && list.toString().equals("((_ 1 0.1 0.1) (e 2 0.2 0.3) (t 2 0.2 0.5) (i 1 0.1 0.6) (m 2 0.2 0.8) (o 1 0.1 0.9) (c 1 0.1 1.0))");
+        // After update, the old probabilities stay until they are asked for again
+        list.update('x');
+        result = result && list.getTotal() == 11 && list.get(list.indexOf('m')).p == 0.2;
+        result = result && list.toString().equals("((x 1 0. 0.0) (_ 1 0.1 0.1) (e 2 0.2 0.3) (t 2 0.2 0.5) (i 1 0.1 0.6) (m 2 0.2 0.8) (o 1 0.1 0.9) (c 1 0.1 1.0))");
+        result = result && list.probabilityOf('m') == 2.0 / 11 && list.get(list.indexOf('x')).p == 1.0 / 11;
+        result = result && list.toString().equals("((x 1 0.0909 0.0909) (_ 1 0.0909 0.1818) (e 2 0.1818 0.3636) (t 2 0.1818 0.5455) (i 1 0.0909 0.6364) (m 2 0.1818 0.8182) (o 1 0.0909 0.9091) (c 1 0.0909 1.0))");
+        // The same after add
+        list.add('x', 2);
+        result = result && list.getTotal() == 13 && list.get(list.indexOf('x')).p == 1.0 / 11;
+        result = result && list.probabilityOf('x') == 3.0 / 13
+                && Math.abs(list.cumulativeProbabilityOf('x') - 3.0 / 13) < 1e-9;
+        if (!result){
+            System.out.println("Probabilities Test failed: " + list);
+        }
+        return result;
+    }
+
+    private static String orderOf(List list) {
+        StringBuilder chars = new StringBuilder();
+        for (CharData cd : list) chars.append(cd.chr);
+        return chars.toString();
+    }
 }
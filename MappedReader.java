@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A reader of a text file that maps the file into memory instead of reading it through streams.
+ *  Characters are decoded straight from the mapped bytes into the caller's array. Files larger
+ *  than MAX_MAPPING bytes are mapped one part at a time, so files of any size can be read.
+ *  In UTF-8 mode (the default, same as In), runs of ASCII bytes are copied without going through
+ *  the charset decoder, which only decodes the multi-byte sequences. In Latin-1 mode, every byte
+ *  is a character, and no decoding is done at all. */
+public class MappedReader extends Reader {
+
+    // The maximal number of bytes mapped at a time (a mapping must be smaller than 2 GB)
+    static final long MAX_MAPPING = 1L << 30;
+
+    // The longest UTF-8 sequence, in bytes
+    private static final int MAX_SEQUENCE = 4;
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    // Whether every byte is read as one Latin-1 character
+    private final boolean latin1;
+
+    // The maximal number of bytes mapped at a time by this reader
+    private final long maxMapping;
+
+    // Decodes the multi-byte sequences; malformed input is replaced, as InputStreamReader does
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // The current mapping, and the position of its first byte in the file
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+    private long mappedStart = 0;
+
+    // Set when a UTF-8 sequence is cut by the end of the current mapping
+    private boolean needsRemap = false;
+
+    // Holds the chars of a surrogate pair that did not fit in the caller's array
+    private final CharBuffer spill = CharBuffer.allocate(2).flip();
+
+    // Wraps the caller's array; reused as long as the caller reads into the same array
+    private CharBuffer out;
+
+    /** Constructs a reader of the given UTF-8 file. */
+    public MappedReader(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /** Constructs a reader of the given file, which is read as Latin-1 if latin1 is true,
+     *  and as UTF-8 otherwise. A pure ASCII file can be read either way. */
+    public MappedReader(Path path, boolean latin1) throws IOException {
+        this(path, latin1, MAX_MAPPING);
+    }
+
+    // Constructs a reader that maps at most maxMapping bytes at a time (at least MAX_SEQUENCE),
+    // so that tests can cross the end of a mapping in a small file.
+    MappedReader(Path path, boolean latin1, long maxMapping) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.latin1 = latin1;
+        this.maxMapping = maxMapping;
+    }
+
+    /** Reads up to len characters into the given array, starting at the given offset.
+     *  Returns the number of characters read, or -1 if the end of the file was reached. */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        int spilled = 0;
+        while (spill.hasRemaining() && spilled < len) {
+            cbuf[off + spilled++] = spill.get();
+        }
+        if (out == null || out.array() != cbuf) out = CharBuffer.wrap(cbuf);
+        out.limit(off + len).position(off + spilled);
+        while (out.hasRemaining()) {
+            if (!bytes.hasRemaining() || needsRemap) {
+                needsRemap = false;
+                if (!remap()) break;
+            }
+            if (latin1) copyLatin1();
+            else decodeUtf8();
+        }
+        int count = out.position() - off;
+        return (count == 0) ? -1 : count;
+    }
+
+    /** Closes the file of this reader. */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Maps the part of the file that starts at the first unread byte.
+    // Returns false if the whole file was read.
+    private boolean remap() throws IOException {
+        long offset = mappedStart + bytes.position();
+        if (offset >= fileSize) return false;
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(maxMapping, fileSize - offset));
+        mappedStart = offset;
+        return true;
+    }
+
+    // Copies bytes to chars, one to one.
+    private void copyLatin1() {
+        int n = Math.min(bytes.remaining(), out.remaining());
+        for (int i = 0; i < n; i++) {
+            out.put((char) (bytes.get() & 0xFF));
+        }
+    }
+
+    // Copies a run of ASCII bytes, then decodes the UTF-8 sequence that follows it, if any.
+    private void decodeUtf8() {
+        int p = bytes.position();
+        int limit = bytes.limit();
+        while (p < limit && out.hasRemaining()) {
+            byte b = bytes.get(p);
+            if (b < 0) break;
+            out.put((char) b);
+            p++;
+        }
+        bytes.position(p);
+        if (p == limit || !out.hasRemaining()) return;
+        // Decodes at most one sequence, so that the next ASCII run is copied again
+        int end = Math.min(limit, p + MAX_SEQUENCE);
+        boolean endOfInput = (end == limit) && (mappedStart + limit == fileSize);
+        bytes.limit(end);
+        CoderResult result = decoder.decode(bytes, out, endOfInput);
+        if (bytes.position() == p) {
+            if (result.isOverflow()) {
+                // A surrogate pair, with room for one char only
+                spill.clear();
+                decoder.decode(bytes, spill, endOfInput);
+                spill.flip();
+                out.put(spill.get());
+            } else {
+                // A sequence cut by the end of the mapping
+                needsRemap = true;
+            }
+        }
+        bytes.limit(limit);
+    }
+}
@@ -0,0 +1,29 @@
+/** Receives measurements of the training and text generation of a language model
+ *  (see LanguageModel.setMetrics). Every method does nothing by default, so an
+ *  implementation only overrides the measurements it needs. The methods may be called by
+ *  several threads at the same time, and some of them once per generated character, so
+ *  they should be cheap and thread-safe. */
+public interface ModelMetrics {
+
+    /** Metrics that ignore every measurement (the default of every model). */
+    ModelMetrics NONE = new ModelMetrics() { };
+
+    /** Called after training on a text of the given number of characters, in which the given
+     *  number of windows (of the window length of the model) were counted, of which the given
+     *  number were new to the model. */
+    default void trained(long chars, long windowsSeen, long windowsCreated, long nanos) { }
+
+    /** Called once for every sampling table the model compiles, with its number of successors.
+     *  The table of a window is compiled the first time a text is generated from the window,
+     *  and again the first time after the window changed. */
+    default void compiled(int successors) { }
+
+    /** Called for every generated character, with the number of successors of the table it was
+     *  sampled from (the most steps a sampler can take, not the steps it took). */
+    default void sampled(int successors) { }
+
+    /** Called after generating a text of the given number of characters (not counting the
+     *  initial text). missed is true if the generation stopped early, on a window that has
+     *  no successors. */
+    default void generated(long chars, long nanos, boolean missed) { }
+}
@@ -0,0 +1,320 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/** A trained language model in a compact, versioned binary format.
+ *  A snapshot can be written to a file and memory-mapped back, and then used to generate
+ *  texts directly from the mapped bytes, without creating any object per window.
+ *  LanguageModel.save and LanguageModel.load use snapshot files to persist models.
+ *  <p>
+ *  The format (big-endian; every section starts at a multiple of 8 bytes):
+ *  <pre>
+ *  header     MAGIC, VERSION, windowLength, windowCount, successorCount, slotCount, flags, 0
+ *  windows    windowCount * windowLength chars, in the iteration order of the model's map
+ *  starts     windowCount + 1 ints; the successors of window w are at starts[w] .. starts[w+1]-1
+ *  chars      successorCount chars, the successors of every window, in list order
+ *  counts     successorCount ints, the counts of the successors
+ *  cp         successorCount doubles, the cumulative probabilities (if FLAG_CUMULATIVE is set)
+ *  slots      slotCount ints, an open-addressing hash table of window numbers + 1 (0 if empty)
+ *  </pre>
+ *  A snapshot can also be built in off-heap memory (see offHeap), for models that are too big
+ *  to keep on the heap without hurting garbage collection. A snapshot must be smaller than 2 GB.
+ *  A snapshot only holds windows of one length, so a model that backs off to shorter windows
+ *  (see LanguageModel.setBackoff) cannot be snapshotted. */
+public class ModelSnapshot implements Closeable {
+
+    // "LMSN"
+    static final int MAGIC = 0x4C4D534E;
+
+    static final int VERSION = 1;
+
+    // The snapshot holds the cumulative probabilities section
+    static final int FLAG_CUMULATIVE = 1;
+
+    // The model used compact successor tables
+    static final int FLAG_COMPACT = 2;
+
+    private static final int HEADER_SIZE = 32;
+
+    // The bytes of this snapshot; null once this snapshot is closed
+    private ByteBuffer buffer;
+
+    // The channel of a mapped file, closed with this snapshot; null if not mapped
+    private final FileChannel channel;
+
+    private final int windowLength;
+    private final int windowCount;
+    private final int successorCount;
+    private final int slotCount;
+    private final int flags;
+
+    // The byte offsets of the sections
+    private final int windowsOffset;
+    private final int startsOffset;
+    private final int charsOffset;
+    private final int countsOffset;
+    private final int cpOffset;
+    private final int slotsOffset;
+
+    /** Constructs a snapshot that reads the given buffer, which starts with a snapshot header.
+     *  Throws an IllegalArgumentException if the buffer does not hold a snapshot of this version. */
+    ModelSnapshot(ByteBuffer buffer, FileChannel channel) {
+        this.buffer = buffer;
+        this.channel = channel;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a language model snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + buffer.getInt(4));
+        }
+        windowLength = buffer.getInt(8);
+        windowCount = buffer.getInt(12);
+        successorCount = buffer.getInt(16);
+        slotCount = buffer.getInt(20);
+        flags = buffer.getInt(24);
+        windowsOffset = HEADER_SIZE;
+        startsOffset = align(windowsOffset + 2L * windowCount * windowLength);
+        charsOffset = align(startsOffset + 4L * (windowCount + 1));
+        countsOffset = align(charsOffset + 2L * successorCount);
+        cpOffset = align(countsOffset + 4L * successorCount);
+        slotsOffset = align(cpOffset + (hasCumulative() ? 8L * successorCount : 0));
+        if (slotsOffset + 4L * slotCount > buffer.capacity()) {
+            throw new IllegalArgumentException("Truncated language model snapshot");
+        }
+    }
+
+    /** Memory-maps the snapshot file at the given path. */
+    public static ModelSnapshot map(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ModelSnapshot(buffer, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Returns a snapshot of the given model (with its cumulative probabilities) that lives in
+     *  off-heap memory, outside of the Java heap, so that the garbage collector never scans or
+     *  copies it. Once the snapshot is built, the model itself can be dropped. The off-heap
+     *  memory is released when the snapshot is closed and no longer referenced.
+     *  Throws an IllegalStateException if the model backs off to shorter windows. */
+    public static ModelSnapshot offHeap(LanguageModel model) {
+        checkFixedOrder(model);
+        String[] windows = model.windows();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(sizeOf(model, windows, true));
+        encode(model, windows, true, buffer);
+        return new ModelSnapshot(buffer, null);
+    }
+
+    /** Writes a snapshot of the given model to the file at the given path. If cumulative is true,
+     *  the snapshot also holds the cumulative probabilities of the successors of every window.
+     *  Throws an IllegalStateException if the model backs off to shorter windows. */
+    public static void write(LanguageModel model, Path path, boolean cumulative) throws IOException {
+        checkFixedOrder(model);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            String[] windows = model.windows();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeOf(model, windows, cumulative));
+            encode(model, windows, cumulative, buffer);
+        }
+    }
+
+    // Checks that the given model does not back off to shorter windows, before anything is written.
+    private static void checkFixedOrder(LanguageModel model) {
+        if (model.isBackoff()) {
+            throw new IllegalStateException("A model that backs off to shorter windows cannot be snapshotted");
+        }
+    }
+
+    // Returns the number of bytes of a snapshot of the given model.
+    static int sizeOf(LanguageModel model, String[] windows, boolean cumulative) {
+        long successors = 0;
+        for (String window : windows) successors += model.samplingTable(window).getSize();
+        long size = align(HEADER_SIZE + 2L * windows.length * model.windowLength);
+        size = align(size + 4L * (windows.length + 1));
+        size = align(size + 2L * successors);
+        size = align(size + 4L * successors);
+        size = align(size + (cumulative ? 8L * successors : 0));
+        size = size + 4L * slotCountFor(windows.length);
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Model too large for a snapshot");
+        return (int) size;
+    }
+
+    // Writes a snapshot of the given model, whose windows are given, into the given buffer.
+    static void encode(LanguageModel model, String[] windows, boolean cumulative, ByteBuffer buffer) {
+        int windowLength = model.windowLength;
+        int successors = 0;
+        for (String window : windows) successors += model.samplingTable(window).getSize();
+        int slots = slotCountFor(windows.length);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, windowLength);
+        buffer.putInt(12, windows.length);
+        buffer.putInt(16, successors);
+        buffer.putInt(20, slots);
+        buffer.putInt(24, (cumulative ? FLAG_CUMULATIVE : 0) | (model.isCompact() ? FLAG_COMPACT : 0));
+        buffer.putInt(28, 0);
+        ModelSnapshot layout = new ModelSnapshot(buffer, null);
+        int next = 0;
+        for (int w = 0; w < windows.length; w++) {
+            String window = windows[w];
+            for (int i = 0; i < windowLength; i++) {
+                buffer.putChar(layout.windowsOffset + 2 * (w * windowLength + i), window.charAt(i));
+            }
+            buffer.putInt(layout.startsOffset + 4 * w, next);
+            SamplingTable table = model.samplingTable(window);
+            for (int j = 0; j < table.getSize(); j++, next++) {
+                buffer.putChar(layout.charsOffset + 2 * next, table.chars[j]);
+                buffer.putInt(layout.countsOffset + 4 * next, table.counts[j]);
+                if (cumulative) buffer.putDouble(layout.cpOffset + 8 * next, table.cp[j]);
+            }
+            int mask = slots - 1;
+            int slot = hash(window) & mask;
+            while (buffer.getInt(layout.slotsOffset + 4 * slot) != 0) slot = (slot + 1) & mask;
+            buffer.putInt(layout.slotsOffset + 4 * slot, w + 1);
+        }
+        buffer.putInt(layout.startsOffset + 4 * windows.length, next);
+    }
+
+    /** Returns the window length of the model of this snapshot. */
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    /** Returns the number of windows in this snapshot. */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /** Checks if this snapshot holds the cumulative probabilities of the successors. */
+    public boolean hasCumulative() {
+        return (flags & FLAG_CUMULATIVE) != 0;
+    }
+
+    /** Checks if the model of this snapshot used compact successor tables. */
+    public boolean isCompact() {
+        return (flags & FLAG_COMPACT) != 0;
+    }
+
+    /** Returns the number of the given window in this snapshot, or -1 if there is no such window. */
+    public int indexOf(CharSequence window) {
+        checkOpen();
+        if (window.length() != windowLength) return -1;
+        int mask = slotCount - 1;
+        for (int slot = hash(window) & mask; ; slot = (slot + 1) & mask) {
+            int w = buffer.getInt(slotsOffset + 4 * slot) - 1;
+            if (w < 0) return -1;
+            if (windowEquals(w, window)) return w;
+        }
+    }
+
+    /** Returns the window with the given number. */
+    public String windowAt(int w) {
+        checkOpen();
+        char[] chars = new char[windowLength];
+        for (int i = 0; i < windowLength; i++) chars[i] = buffer.getChar(windowsOffset + 2 * (w * windowLength + i));
+        return new String(chars);
+    }
+
+    /** Returns the number of successors of the window with the given number. */
+    public int getSize(int w) {
+        checkOpen();
+        return start(w + 1) - start(w);
+    }
+
+    /** Returns the successor at the given index (in list order) of the window with the given number. */
+    public char charAt(int w, int index) {
+        checkOpen();
+        return buffer.getChar(charsOffset + 2 * (start(w) + index));
+    }
+
+    /** Returns the count of the successor at the given index of the window with the given number. */
+    public int countAt(int w, int index) {
+        checkOpen();
+        return buffer.getInt(countsOffset + 4 * (start(w) + index));
+    }
+
+    /** Returns the first successor of the window with the given number whose cumulative
+     *  probability is at least r, or ' ' if there is none. Gives the same result as
+     *  SamplingTable.charAtProbability on the table of the window. */
+    public char charAtProbability(int w, double r) {
+        checkOpen();
+        int from = start(w);
+        int to = start(w + 1);
+        if (hasCumulative()) {
+            for (int i = from; i < to; i++) {
+                if (r <= buffer.getDouble(cpOffset + 8 * i)) return buffer.getChar(charsOffset + 2 * i);
+            }
+            return ' ';
+        }
+        int total = 0;
+        for (int i = from; i < to; i++) total += buffer.getInt(countsOffset + 4 * i);
+        double cumulativeProbability = 0.0;
+        for (int i = from; i < to; i++) {
+            cumulativeProbability += (double) buffer.getInt(countsOffset + 4 * i) / total;
+            if (r <= cumulativeProbability) return buffer.getChar(charsOffset + 2 * i);
+        }
+        return ' ';
+    }
+
+    /** Generates a random text, exactly as LanguageModel.generate does with the default sampler,
+     *  using the given random number generator. */
+    public String generate(String initialText, int textLength, Random random) {
+        checkOpen();
+        StringBuilder generatedText = new StringBuilder(initialText);
+        for (int i = 0; i < textLength; i++) {
+            int w = indexOf(generatedText.subSequence(generatedText.length() - windowLength, generatedText.length()));
+            if (w < 0) break;
+            generatedText.append(charAtProbability(w, random.nextDouble()));
+        }
+        return generatedText.toString();
+    }
+
+    /** Closes this snapshot, and the file of this snapshot if it was mapped.
+     *  Using the snapshot afterwards throws an IllegalStateException. */
+    public void close() throws IOException {
+        buffer = null;
+        if (channel != null) channel.close();
+    }
+
+    private void checkOpen() {
+        if (buffer == null) throw new IllegalStateException("Snapshot is closed");
+    }
+
+    private int start(int w) {
+        return buffer.getInt(startsOffset + 4 * w);
+    }
+
+    private boolean windowEquals(int w, CharSequence window) {
+        int offset = windowsOffset + 2 * w * windowLength;
+        for (int i = 0; i < windowLength; i++) {
+            if (buffer.getChar(offset + 2 * i) != window.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // The polynomial hash of String.hashCode, with its bits spread.
+    private static int hash(CharSequence window) {
+        int h = 0;
+        for (int i = 0; i < window.length(); i++) h = 31 * h + window.charAt(i);
+        h *= 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    // Returns the number of slots of the hash table of the given number of windows (a power of 2).
+    private static int slotCountFor(int windowCount) {
+        int slots = 2;
+        while (slots < 2L * windowCount) slots *= 2;
+        return slots;
+    }
+
+    private static int align(long offset) {
+        return (int) ((offset + 7) & ~7L);
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** A map from the windows of a text (of a fixed length) to the counts of the characters that
+ *  followed them, for texts with a small alphabet. Every distinct character of the text gets a
+ *  small code (0, 1, 2, ... in order of first appearance), and a window is packed into a long
+ *  key of windowLength codes of 64 / windowLength bits each (at most 16): for example, windows
+ *  of 9 characters of an alphabet of up to 128 characters, 7 bits per character. So no String
+ *  is created for a window, and the key of the next window is computed from the key of the
+ *  current one with a shift. Adding a character beyond the capacity of the alphabet throws an
+ *  IllegalStateException, and leaves the map unchanged.
+ *  <p>
+ *  Like a ContextTrie, the map is stored in primitive arrays, without an object per window:
+ *  windows are numbered in the order they were first seen, and are found by key in an
+ *  open-addressing hash table. The successors of a window are a linked list of edges (see
+ *  SuccessorEdges), in the same order as in the List of a map model trained on the same text. */
+public class PackedWindowMap {
+
+    // The length of the windows
+    final int windowLength;
+
+    // The number of bits of the code of a character, and the mask of a code
+    private final int bits;
+    private final long codeMask;
+
+    // The mask of a key (windowLength codes)
+    private final long keyMask;
+
+    // The alphabet: symbols[code] is the character of the code, and codes[chr] is the code of
+    // the character plus 1 (0 for characters not in the alphabet, and beyond codes.length)
+    private char[] symbols;
+    private int[] codes;
+    private int alphabetSize;
+
+    // The key of every window
+    private long[] windowKey;
+    private int windowCount;
+
+    // Open-addressing hash table: each slot holds (window + 1), or 0 if empty
+    private int[] slots;
+
+    // The successors of every window, numbered as the windows
+    private final SuccessorEdges edges = new SuccessorEdges();
+
+    // The key of the last characters of the training text, and how many of them (up to windowLength)
+    private long key;
+    private int keyLength;
+
+    /** Constructs an empty map of windows of the given length (at most 64 characters). */
+    public PackedWindowMap(int windowLength) {
+        if (windowLength > 64) throw new IllegalArgumentException("Window length too large: " + windowLength);
+        this.windowLength = windowLength;
+        bits = (windowLength == 0) ? 16 : Math.min(16, 64 / windowLength);
+        codeMask = (1L << bits) - 1;
+        keyMask = (bits * windowLength == 64) ? -1L : (1L << (bits * windowLength)) - 1;
+        symbols = new char[16];
+        codes = new int[128];
+        windowKey = new long[64];
+        slots = new int[128];
+        startText();
+    }
+
+    /** Returns the number of windows in this map. */
+    public int getSize() {
+        return windowCount;
+    }
+
+    /** Returns the number of window and successor pairs in this map. */
+    public int getEdgeCount() {
+        return edges.getEdgeTotal();
+    }
+
+    /** Returns the number of distinct characters seen so far. */
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    /** Returns the maximal number of distinct characters (2 to the power of the bits per character). */
+    public int getAlphabetCapacity() {
+        return 1 << bits;
+    }
+
+    /** Starts a new training text: the next windowLength characters added have no window before them. */
+    public void startText() {
+        key = 0;
+        keyLength = 0;
+    }
+
+    /** Adds the given character, the next character of the training text, to this map:
+     *  counts it as a successor of the window that ends before it, if any.
+     *  Returns true if there is such a window. */
+    public boolean add(char chr) {
+        // The code first, so that a character beyond the alphabet changes nothing
+        int code = codeOf(chr);
+        boolean whole = keyLength == windowLength;
+        if (whole) {
+            int window = windowOf(key);
+            if (window < 0) window = newWindow(key);
+            int edge = edges.edgeOf(window, chr);
+            if (edge < 0) edge = edges.newEdge(window, chr);
+            edges.increment(window, edge);
+        } else {
+            keyLength++;
+        }
+        key = push(key, code);
+        return whole;
+    }
+
+    /** Throws an IllegalStateException if the given characters (from index from to index to - 1)
+     *  have more new characters than the alphabet has room for, so that a text can be checked
+     *  before any of it is added. */
+    public void checkAlphabet(char[] chars, int from, int to) {
+        BitSet added = null;
+        int size = alphabetSize;
+        for (int i = from; i < to; i++) {
+            char chr = chars[i];
+            if (existingCodeOf(chr) >= 0 || (added != null && added.get(chr))) continue;
+            if (size == getAlphabetCapacity()) throw alphabetOverflow();
+            if (added == null) added = new BitSet();
+            added.set(chr);
+            size++;
+        }
+    }
+
+    /** Returns the number of the given window, or -1 if it is not in this map. */
+    public int get(CharSequence window) {
+        if (window.length() != windowLength) return -1;
+        long key = 0;
+        for (int i = 0; i < windowLength; i++) {
+            int code = existingCodeOf(window.charAt(i));
+            if (code < 0) return -1;
+            key = push(key, code);
+        }
+        return windowOf(key);
+    }
+
+    /** Returns the number of the window made of the last windowLength - 1 characters of the
+     *  given window followed by the given character, or -1 if it is not in this map. */
+    public int next(int window, char chr) {
+        int code = existingCodeOf(chr);
+        return (code < 0) ? -1 : windowOf(push(windowKey[window], code));
+    }
+
+    /** Returns the characters of the given window. */
+    public String window(int window) {
+        char[] chars = new char[windowLength];
+        long key = windowKey[window];
+        for (int i = windowLength - 1; i >= 0; i--) {
+            chars[i] = symbols[(int) (key & codeMask)];
+            key >>>= bits;
+        }
+        return new String(chars);
+    }
+
+    /** Sets the metrics that receive the size of every sampling table compiled. */
+    public void setMetrics(ModelMetrics metrics) {
+        edges.metrics = metrics;
+    }
+
+    /** Returns the sampling table of the successors of the given window,
+     *  compiling it if the window changed since it was last compiled. */
+    public SamplingTable samplingTable(int window) {
+        return edges.samplingTable(window);
+    }
+
+    /** Returns a textual representation of the successors of the given window,
+     *  in the same format as List.toString. */
+    public String toString(int window) {
+        return edges.toString(window);
+    }
+
+    // Appends the given code to the given key, dropping the code of the first character.
+    private long push(long key, int code) {
+        return ((key << bits) | code) & keyMask;
+    }
+
+    // Returns the code of the given character, adding it to the alphabet if needed.
+    private int codeOf(char chr) {
+        int code = existingCodeOf(chr);
+        if (code >= 0) return code;
+        if (alphabetSize == getAlphabetCapacity()) throw alphabetOverflow();
+        if (chr >= codes.length) codes = Arrays.copyOf(codes, Math.max(chr + 1, Math.min(codes.length * 2, 65536)));
+        if (alphabetSize == symbols.length) symbols = Arrays.copyOf(symbols, alphabetSize * 2);
+        symbols[alphabetSize] = chr;
+        codes[chr] = ++alphabetSize;
+        return alphabetSize - 1;
+    }
+
+    private IllegalStateException alphabetOverflow() {
+        return new IllegalStateException("The text has more than " + getAlphabetCapacity()
+                + " distinct characters, too many for packed windows of length " + windowLength);
+    }
+
+    // Returns the code of the given character, or -1 if it is not in the alphabet.
+    private int existingCodeOf(char chr) {
+        return (chr < codes.length) ? codes[chr] - 1 : -1;
+    }
+
+    // Returns the window of the given key, or -1.
+    private int windowOf(long key) {
+        int mask = slots.length - 1;
+        for (int slot = WindowIndex.slotOf(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (windowKey[slots[slot] - 1] == key) return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    private int newWindow(long key) {
+        if (windowCount == windowKey.length) {
+            int capacity = windowCount * 2;
+            windowKey = Arrays.copyOf(windowKey, capacity);
+        }
+        if ((windowCount + 1) * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int window = 0; window < windowCount; window++) insert(window);
+        }
+        windowKey[windowCount] = key;
+        edges.newContext();
+        insert(windowCount);
+        return windowCount++;
+    }
+
+    private void insert(int window) {
+        int mask = slots.length - 1;
+        int slot = WindowIndex.slotOf(windowKey[window]) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = window + 1;
+    }
+}
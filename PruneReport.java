@@ -0,0 +1,44 @@
+/** Reports what a pruning pass removed from a language model (see LanguageModel.prune):
+ *  the number of windows and successors, and the estimated heap they used, before and after. */
+public class PruneReport {
+
+    final int windowsBefore;
+    final int windowsAfter;
+    final long successorsBefore;
+    final long successorsAfter;
+    final long bytesBefore;
+    final long bytesAfter;
+
+    /** Constructs a report of a pruning pass. */
+    public PruneReport(int windowsBefore, int windowsAfter, long successorsBefore, long successorsAfter,
+                       long bytesBefore, long bytesAfter) {
+        this.windowsBefore = windowsBefore;
+        this.windowsAfter = windowsAfter;
+        this.successorsBefore = successorsBefore;
+        this.successorsAfter = successorsAfter;
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+    }
+
+    /** Returns the number of windows removed. */
+    public int getWindowsRemoved() {
+        return windowsBefore - windowsAfter;
+    }
+
+    /** Returns the number of successors removed (including those of the removed windows). */
+    public long getSuccessorsRemoved() {
+        return successorsBefore - successorsAfter;
+    }
+
+    /** Returns the estimated number of bytes of heap reclaimed. */
+    public long getBytesReclaimed() {
+        return bytesBefore - bytesAfter;
+    }
+
+    /** Returns a textual representation of this report. */
+    public String toString() {
+        return "Removed " + getWindowsRemoved() + " of " + windowsBefore + " windows and "
+                + getSuccessorsRemoved() + " of " + successorsBefore + " successors, reclaiming about "
+                + getBytesReclaimed() / 1000 + " of " + bytesBefore / 1000 + " KB";
+    }
+}
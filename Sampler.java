@@ -0,0 +1,10 @@
+import java.util.random.RandomGenerator;
+
+/** Represents a strategy for drawing a random character from a sampling table.
+ *  A language model uses one sampler for all its draws (see LanguageModel.setSampler). */
+public interface Sampler {
+
+    /** Returns a random character from the given sampling table,
+     *  drawn according to the counts of its characters. */
+    char sample(SamplingTable table, RandomGenerator random);
+}
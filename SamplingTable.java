@@ -0,0 +1,115 @@
+/** Represents a compiled, read-only sampling table of the characters that follow one window.
+ *  A sampling table is built once from a list of character data objects, after training,
+ *  and holds the characters of the list (in list order), their counts, and their cumulative
+ *  counts and cumulative probabilities. Drawing a character from a sampling table does not
+ *  walk the list and does not recompute any probability. */
+public class SamplingTable {
+
+    // the characters, in the same order as in the list this table was compiled from
+    final char[] chars;
+
+    // the counts of the characters
+    final int[] counts;
+
+    // cumulativeCounts[i] = counts[0] + ... + counts[i] (sorted, ascending)
+    final int[] cumulativeCounts;
+
+    // cumulative probabilities, accumulated exactly as getRandomChar accumulates them
+    final double[] cp;
+
+    // the sum of all the counts
+    final int total;
+
+    // the alias table of this table, built by the AliasSampler on its first draw
+    AliasSampler.AliasTable aliasTable;
+
+    /** Compiles a sampling table from the given list. Does not modify the list. */
+    public SamplingTable(List probs) {
+        this(charsOf(probs), countsOf(probs));
+    }
+
+    /** Compiles a sampling table from the given character counts table. */
+    public SamplingTable(CharCountTable probs) {
+        this(charsOf(probs), countsOf(probs));
+    }
+
+    /** Constructs a sampling table from the given characters and counts (in list order). */
+    SamplingTable(char[] chars, int[] counts) {
+        int size = chars.length;
+        this.chars = chars;
+        this.counts = counts;
+        cumulativeCounts = new int[size];
+        cp = new double[size];
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += counts[i];
+            cumulativeCounts[i] = sum;
+        }
+        total = sum;
+        double cumulativeProbability = 0.0;
+        for (int i = 0; i < size; i++) {
+            cumulativeProbability += (double) counts[i] / total;
+            cp[i] = cumulativeProbability;
+        }
+    }
+
+    private static char[] charsOf(List probs) {
+        char[] chars = new char[probs.getSize()];
+        int i = 0;
+        for (CharData cd : probs) chars[i++] = cd.chr;
+        return chars;
+    }
+
+    private static int[] countsOf(List probs) {
+        int[] counts = new int[probs.getSize()];
+        int i = 0;
+        for (CharData cd : probs) counts[i++] = cd.count;
+        return counts;
+    }
+
+    private static char[] charsOf(CharCountTable probs) {
+        char[] chars = new char[probs.getSize()];
+        for (int i = 0; i < chars.length; i++) chars[i] = probs.charAt(i);
+        return chars;
+    }
+
+    private static int[] countsOf(CharCountTable probs) {
+        int[] counts = new int[probs.getSize()];
+        for (int i = 0; i < counts.length; i++) counts[i] = probs.countAt(i);
+        return counts;
+    }
+
+    /** Returns the number of characters in this table. */
+    public int getSize() {
+        return chars.length;
+    }
+
+    /** Returns the character at the given index of this table. */
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    /** Returns the sum of all the counts in this table. */
+    public int getTotal() {
+        return total;
+    }
+
+    /** Returns the first character whose cumulative probability is at least r,
+     *  or ' ' if there is no such character (can only happen due to rounding).
+     *  Gives the same result as LanguageModel.getRandomChar(List) for the same r. */
+    public char charAtProbability(double r) {
+        for (int i = 0; i < cp.length; i++) {
+            if (r <= cp[i]) return chars[i];
+        }
+        return ' ';
+    }
+
+    /** Returns the first character whose cumulative count is greater than r,
+     *  for 0 <= r < getTotal(). Each character is returned for as many values of r as its count. */
+    public char charAtCount(int r) {
+        for (int i = 0; i < cumulativeCounts.length; i++) {
+            if (r < cumulativeCounts[i]) return chars[i];
+        }
+        throw new IllegalArgumentException("r must be less than the total count: " + r);
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/** The successors of numbered contexts (the nodes of a ContextTrie, the windows of a
+ *  PackedWindowMap), stored in primitive arrays, without an object per context or successor.
+ *  The successors of a context are a linked list of edges, each with a character and the number
+ *  of times it followed the context. As in a List, a new successor is added at the beginning of
+ *  the edges of its context. The sampling table of a context is compiled on first use, and kept
+ *  until the context changes. */
+class SuccessorEdges {
+
+    // Contexts: first edge (-1 if none), compiled sampling table (null if changed since compiled)
+    private int[] firstEdge;
+    private SamplingTable[] tables;
+    private int contextCount;
+
+    // Receives the size of every sampling table compiled
+    ModelMetrics metrics = ModelMetrics.NONE;
+
+    // Edges: character, count, next edge of the same context (-1 if none)
+    private char[] edgeChar;
+    private int[] edgeCount;
+    private int[] edgeNext;
+    private int edgeTotal;
+
+    /** Constructs an empty store, with no context. */
+    SuccessorEdges() {
+        firstEdge = new int[64];
+        tables = new SamplingTable[64];
+        edgeChar = new char[64];
+        edgeCount = new int[64];
+        edgeNext = new int[64];
+    }
+
+    /** Adds a context without successors, and returns its number (0, 1, 2, ...). */
+    int newContext() {
+        if (contextCount == firstEdge.length) {
+            int capacity = contextCount * 2;
+            firstEdge = Arrays.copyOf(firstEdge, capacity);
+            tables = Arrays.copyOf(tables, capacity);
+        }
+        firstEdge[contextCount] = -1;
+        return contextCount++;
+    }
+
+    /** Returns the number of edges (context and successor pairs). */
+    int getEdgeTotal() {
+        return edgeTotal;
+    }
+
+    /** Returns the number of edges allocated, an upper bound of the number of every edge. */
+    int getEdgeCapacity() {
+        return edgeChar.length;
+    }
+
+    /** Returns the first edge of the given context, or -1 if it has no successors. */
+    int firstEdge(int context) {
+        return firstEdge[context];
+    }
+
+    /** Returns the edge that follows the given edge in the successors of its context, or -1. */
+    int nextEdge(int edge) {
+        return edgeNext[edge];
+    }
+
+    /** Returns the character of the given edge. */
+    char charOf(int edge) {
+        return edgeChar[edge];
+    }
+
+    /** Returns the number of successors of the given context. */
+    int getSize(int context) {
+        int size = 0;
+        for (int edge = firstEdge[context]; edge >= 0; edge = edgeNext[edge]) size++;
+        return size;
+    }
+
+    /** Returns the edge of the given character from the given context, or -1. */
+    int edgeOf(int context, char chr) {
+        for (int edge = firstEdge[context]; edge >= 0; edge = edgeNext[edge]) {
+            if (edgeChar[edge] == chr) return edge;
+        }
+        return -1;
+    }
+
+    /** Adds an edge of the given character, with a count of 0, at the beginning of the edges
+     *  of the given context, and returns it. */
+    int newEdge(int context, char chr) {
+        if (edgeTotal == edgeChar.length) {
+            int capacity = edgeTotal * 2;
+            edgeChar = Arrays.copyOf(edgeChar, capacity);
+            edgeCount = Arrays.copyOf(edgeCount, capacity);
+            edgeNext = Arrays.copyOf(edgeNext, capacity);
+        }
+        edgeChar[edgeTotal] = chr;
+        edgeCount[edgeTotal] = 0;
+        edgeNext[edgeTotal] = firstEdge[context];
+        firstEdge[context] = edgeTotal;
+        return edgeTotal++;
+    }
+
+    /** Increments the count of the given edge of the given context. */
+    void increment(int context, int edge) {
+        edgeCount[edge]++;
+        tables[context] = null;
+    }
+
+    /** Returns the sampling table of the successors of the given context (in list order),
+     *  compiled on first use and kept until the context changes. */
+    SamplingTable samplingTable(int context) {
+        SamplingTable table = tables[context];
+        return (table != null) ? table : compile(context);
+    }
+
+    // Compiles the sampling table of the given context, unless another thread just did.
+    private synchronized SamplingTable compile(int context) {
+        SamplingTable table = tables[context];
+        if (table != null) return table;
+        int size = getSize(context);
+        char[] chars = new char[size];
+        int[] counts = new int[size];
+        int i = 0;
+        for (int edge = firstEdge[context]; edge >= 0; edge = edgeNext[edge], i++) {
+            chars[i] = edgeChar[edge];
+            counts[i] = edgeCount[edge];
+        }
+        table = new SamplingTable(chars, counts);
+        tables[context] = table;
+        metrics.compiled(size);
+        return table;
+    }
+
+    /** Returns a textual representation of the successors of the given context,
+     *  in the same format as List.toString. */
+    String toString(int context) {
+        List list = new List();
+        SamplingTable table = samplingTable(context);
+        for (int i = table.getSize() - 1; i >= 0; i--) {
+            list.add(table.chars[i], table.counts[i]);
+        }
+        list.computeProbabilities();
+        return list.toString();
+    }
+}
@@ -0,0 +1,18 @@
+/** The operations shared by the two kinds of successor containers of a language model:
+ *  List (a linked list of CharData objects) and CharCountTable (two primitive arrays).
+ *  Lets the training code update either kind in the same way. */
+public interface Successors {
+
+    /** Returns the number of characters in this container. */
+    int getSize();
+
+    /** Returns the index of the given character, or -1 if it is not in this container. */
+    int indexOf(char chr);
+
+    /** Increments the counter of the given character, adding it if it is not in this container. */
+    void update(char chr);
+
+    /** Adds the given amount to the counter of the given character, adding it if it is
+     *  not in this container. Adding a new character puts it where update would put it. */
+    void add(char chr, int count);
+}
@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+
+/** The partial model built from one part of a corpus during parallel training.
+ *  A shard counts the successors of the windows of its part of the text in CharCountTables,
+ *  and remembers the order in which it first saw every window. Since a CharCountTable keeps
+ *  its characters in the order they were first added, merging the shards of consecutive
+ *  parts, in text order, gives exactly the maps that sequential training would give. */
+public class TrainingShard {
+
+    // The window length of the model being trained
+    private final int windowLength;
+
+    // Finds the successors table of a window of this shard
+    private final WindowIndex<CharCountTable> index;
+
+    // The windows of this shard, in the order they were first seen
+    final ArrayList<String> windows = new ArrayList<String>();
+
+    // tables.get(i) holds the successors of windows.get(i)
+    final ArrayList<CharCountTable> tables = new ArrayList<CharCountTable>();
+
+    /** Constructs an empty shard for windows of the given length. */
+    public TrainingShard(int windowLength) {
+        this.windowLength = windowLength;
+        this.index = new WindowIndex<CharCountTable>(windowLength);
+    }
+
+    /** Counts the successors of the windows that start at positions from (inclusive)
+     *  to to (exclusive) of the given text. Reads the text up to position to + windowLength. */
+    public void count(char[] text, int from, int to) {
+        long key = 0;
+        for (int i = from; i < to; i++) {
+            key = (i == from) ? index.keyOf(text, i) : index.roll(key, text[i - 1], text[i + windowLength - 1]);
+            CharCountTable table = index.get(text, i, key);
+            if (table == null) {
+                table = newTable(new String(text, i, windowLength), key);
+            }
+            table.update(text[i + windowLength]);
+        }
+    }
+
+    /** Adds the counts of the given shard, which covers the part of the text
+     *  that follows the part of this shard, to this shard. */
+    public void merge(TrainingShard other) {
+        for (int i = 0; i < other.windows.size(); i++) {
+            String window = other.windows.get(i);
+            long key = index.keyOf(window);
+            CharCountTable table = index.get(window, key);
+            if (table == null) {
+                table = newTable(window, key);
+            }
+            addAll(other.tables.get(i), table);
+        }
+    }
+
+    /** Adds the counts of this shard to the given model's successors, in text order. */
+    public void mergeInto(LanguageModel model) {
+        for (int i = 0; i < windows.size(); i++) {
+            addAll(tables.get(i), model.successorsOf(windows.get(i)));
+        }
+    }
+
+    // Adds a new, empty window to this shard.
+    private CharCountTable newTable(String window, long key) {
+        CharCountTable table = new CharCountTable();
+        index.put(window, key, table);
+        windows.add(window);
+        tables.add(table);
+        return table;
+    }
+
+    // Adds the counts of the given table to the given successors, in the order they were first added.
+    private static void addAll(CharCountTable from, Successors to) {
+        for (int j = from.getSize() - 1; j >= 0; j--) {
+            to.add(from.charAt(j), from.countAt(j));
+        }
+    }
+}
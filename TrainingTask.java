@@ -0,0 +1,43 @@
+import java.util.concurrent.RecursiveTask;
+
+/** A fork/join task that trains a shard on a range of window positions of a text.
+ *  Ranges longer than THRESHOLD are split in two halves that are trained in parallel,
+ *  after which the right shard is merged into the left one. */
+public class TrainingTask extends RecursiveTask<TrainingShard> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Ranges of up to this many windows are trained by a single task
+    static final int THRESHOLD = 1 << 16;
+
+    private final char[] text;
+    private final int windowLength;
+    private final int from;
+    private final int to;
+
+    /** Constructs a task that trains on the windows that start at positions
+     *  from (inclusive) to to (exclusive) of the given text. */
+    public TrainingTask(char[] text, int windowLength, int from, int to) {
+        this.text = text;
+        this.windowLength = windowLength;
+        this.from = from;
+        this.to = to;
+    }
+
+    /** Trains and returns the shard of the range of this task. */
+    protected TrainingShard compute() {
+        if (to - from <= THRESHOLD) {
+            TrainingShard shard = new TrainingShard(windowLength);
+            shard.count(text, from, to);
+            return shard;
+        }
+        int mid = (from + to) >>> 1;
+        TrainingTask left = new TrainingTask(text, windowLength, from, mid);
+        TrainingTask right = new TrainingTask(text, windowLength, mid, to);
+        left.fork();
+        TrainingShard rightShard = right.compute();
+        TrainingShard leftShard = left.join();
+        leftShard.merge(rightShard);
+        return leftShard;
+    }
+}
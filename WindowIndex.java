@@ -0,0 +1,183 @@
+/** An open-addressing hash table from windows (strings of a fixed length) to values,
+ *  looked up by the position of a window in a char array, without creating a String.
+ *  Every window is identified by a long key that can be rolled from one position of the
+ *  text to the next in O(1): for windows of up to 4 characters, the key is the window
+ *  itself, packed 16 bits per character, so keys are compared instead of characters;
+ *  for longer windows, the key is a Rabin-Karp polynomial hash (the same polynomial as
+ *  String.hashCode), and a matching key is confirmed by comparing the characters. */
+public class WindowIndex<V> {
+
+    // The base of the polynomial hash
+    private static final int BASE = 31;
+
+    // Windows of up to this length are packed into their keys
+    static final int MAX_PACKED_LENGTH = 4;
+
+    // The length of the windows in this index
+    private final int windowLength;
+
+    // Whether the keys of this index are packed windows (exact) or hashes
+    private final boolean packed;
+
+    // BASE to the power of windowLength - 1, used to roll hashes
+    private final int power;
+
+    // Parallel arrays of slots; a slot is empty when its window is null
+    private String[] windows;
+    private long[] keys;
+    private Object[] values;
+
+    // The number of windows in this index
+    private int size;
+
+    /** Constructs an empty index of windows of the given length. */
+    public WindowIndex(int windowLength) {
+        this.windowLength = windowLength;
+        this.packed = windowLength <= MAX_PACKED_LENGTH;
+        int p = 1;
+        for (int i = 1; i < windowLength; i++) p *= BASE;
+        this.power = p;
+        windows = new String[64];
+        keys = new long[64];
+        values = new Object[64];
+    }
+
+    /** Returns the number of windows in this index. */
+    public int getSize() {
+        return size;
+    }
+
+    /** Returns the key of the window that starts at the given position of the given text. */
+    public long keyOf(char[] text, int start) {
+        long key = 0;
+        for (int i = start; i < start + windowLength; i++) key = push(key, text[i]);
+        return key;
+    }
+
+    /** Returns the key of the given window. */
+    public long keyOf(String window) {
+        long key = 0;
+        for (int i = 0; i < windowLength; i++) key = push(key, window.charAt(i));
+        return key;
+    }
+
+    /** Returns the key of the window that follows the window with the given key,
+     *  where out is the first character of that window and in is the character after it. */
+    public long roll(long key, char out, char in) {
+        if (packed) return push(key, in);
+        return push((int) key - out * power, in);
+    }
+
+    /** Returns the value of the window that starts at the given position of the given text,
+     *  whose key is the given key, or null if there is no such window in this index. */
+    @SuppressWarnings("unchecked")
+    public V get(char[] text, int start, long key) {
+        int mask = windows.length - 1;
+        for (int slot = slotOf(key) & mask; windows[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && (packed || matches(windows[slot], text, start))) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /** Returns the value of the given window, whose key is the given key,
+     *  or null if there is no such window in this index. */
+    @SuppressWarnings("unchecked")
+    public V get(String window, long key) {
+        int mask = windows.length - 1;
+        for (int slot = slotOf(key) & mask; windows[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && (packed || windows[slot].equals(window))) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /** Adds the given window, whose key is the given key, with the given value.
+     *  The window must not already be in this index. */
+    public void put(String window, long key, V value) {
+        if ((size + 1) * 2 > windows.length) resize(windows.length * 2);
+        insert(window, key, value);
+        size++;
+    }
+
+    /** Sets the value of the given window, whose key is the given key,
+     *  adding the window to this index if it is not already in it. */
+    public void set(String window, long key, V value) {
+        int mask = windows.length - 1;
+        for (int slot = slotOf(key) & mask; windows[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && windows[slot].equals(window)) {
+                values[slot] = value;
+                return;
+            }
+        }
+        put(window, key, value);
+    }
+
+    /** Replaces the value of the window that starts at the given position of the given text,
+     *  whose key is the given key, with the given value. The window must be in this index.
+     *  Does not change the slots of the index, so threads that look windows up at the same time
+     *  see either the old or the new value. */
+    public void replace(char[] text, int start, long key, V value) {
+        int mask = windows.length - 1;
+        for (int slot = slotOf(key) & mask; windows[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && (packed || matches(windows[slot], text, start))) {
+                values[slot] = value;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No such window: " + new String(text, start, windowLength));
+    }
+
+    /** Returns the windows of this index, in no particular order. */
+    public String[] windows() {
+        String[] result = new String[size];
+        int i = 0;
+        for (String window : windows) {
+            if (window != null) result[i++] = window;
+        }
+        return result;
+    }
+
+    // Appends a character to a key.
+    private long push(long key, char chr) {
+        if (packed) return (windowLength == 0) ? 0 : (key << 16 | chr) & (-1L >>> (64 - 16 * windowLength));
+        return (int) key * BASE + chr;
+    }
+
+    // Checks if the given window equals the characters of the text at the given position.
+    private boolean matches(String window, char[] text, int start) {
+        for (int i = 0; i < windowLength; i++) {
+            if (window.charAt(i) != text[start + i]) return false;
+        }
+        return true;
+    }
+
+    private void insert(String window, long key, Object value) {
+        int mask = windows.length - 1;
+        int slot = slotOf(key) & mask;
+        while (windows[slot] != null) slot = (slot + 1) & mask;
+        windows[slot] = window;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    private void resize(int capacity) {
+        String[] oldWindows = windows;
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        windows = new String[capacity];
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldWindows.length; i++) {
+            if (oldWindows[i] != null) insert(oldWindows[i], oldKeys[i], oldValues[i]);
+        }
+    }
+
+    // Spreads the bits of a key over a slot number.
+    static int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
@@ -0,0 +1,90 @@
+import lmbench.Target;
+
+/** Implements the benchmark Target by calling the model classes directly. */
+public class BenchTarget implements Target {
+
+    public Object train(String fileName, int windowLength, int seed) {
+        LanguageModel model = new LanguageModel(windowLength, seed);
+        model.train(fileName);
+        return model;
+    }
+
+    public Object trainParallel(String fileName, int windowLength, int seed) {
+        LanguageModel model = new LanguageModel(windowLength, seed);
+        model.trainParallel(fileName);
+        return model;
+    }
+
+    public void setSampler(Object model, String sampler) {
+        switch (sampler) {
+            case "linear":
+                ((LanguageModel) model).setSampler(new LinearSampler());
+                break;
+            case "binary":
+                ((LanguageModel) model).setSampler(new BinarySearchSampler());
+                break;
+            case "alias":
+                ((LanguageModel) model).setSampler(new AliasSampler());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sampler: " + sampler);
+        }
+    }
+
+    public String generate(Object model, String initialText, int textLength) {
+        return ((LanguageModel) model).generate(initialText, textLength);
+    }
+
+    public Object newList(int fanOut) {
+        List list = new List();
+        for (int i = 0; i < fanOut; i++) {
+            // the first characters are the most frequent, as in English text
+            for (int j = 0; j < fanOut - i; j++) list.update((char) ('!' + i));
+        }
+        new LanguageModel(1).calculateProbabilities(list);
+        return list;
+    }
+
+    public Object newSamplingTable(Object list) {
+        return new SamplingTable((List) list);
+    }
+
+    public char getRandomChar(Object model, Object list) {
+        return ((LanguageModel) model).getRandomChar((List) list);
+    }
+
+    public char sample(Object model, Object table) {
+        return ((LanguageModel) model).getRandomChar((SamplingTable) table);
+    }
+
+    public void update(Object list, char chr) {
+        ((List) list).update(chr);
+    }
+
+    public Object get(Object list, int index) {
+        return ((List) list).get(index);
+    }
+
+    public int indexOf(Object list, char chr) {
+        return ((List) list).indexOf(chr);
+    }
+
+    public int sumCountsByIndex(Object list) {
+        List probs = (List) list;
+        int sum = 0;
+        for (int i = 0; i < probs.getSize(); i++) sum += probs.get(i).count;
+        return sum;
+    }
+
+    public int sumCountsByIterator(Object list) {
+        int sum = 0;
+        for (CharData cd : (List) list) sum += cd.count;
+        return sum;
+    }
+
+    public int sumCountsByForEach(Object list) {
+        int[] sum = new int[1];
+        ((List) list).forEachCount((chr, count) -> sum[0] += count);
+        return sum[0];
+    }
+}
@@ -0,0 +1,45 @@
+package lmbench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures generation throughput; the score is in generated characters per second. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenerateBenchmark {
+
+    static final int TEXT_LENGTH = 10_000;
+
+    @Param({"originofspecies.txt"})
+    public String corpus;
+
+    @Param({"3", "7"})
+    public int windowLength;
+
+    @Param({"linear", "binary", "alias"})
+    public String sampler;
+
+    private Target target;
+    private Object model;
+    private String initialText;
+
+    @Setup
+    public void setup() {
+        target = Target.load();
+        model = target.train(Target.corpus(corpus), windowLength, 20);
+        target.setSampler(model, sampler);
+        initialText = "Natural selection".substring(0, Math.max(windowLength, 7));
+        // compiles the model before measuring
+        target.generate(model, initialText, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public String generate() {
+        return target.generate(model, initialText, TEXT_LENGTH);
+    }
+}
@@ -0,0 +1,45 @@
+package lmbench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures a single draw of a random character, per number of successors (fan-out):
+ *  from a List with getRandomChar, and from a compiled sampling table with each sampler. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetRandomCharBenchmark {
+
+    @Param({"2", "8", "32", "96"})
+    public int fanOut;
+
+    @Param({"linear", "binary", "alias"})
+    public String sampler;
+
+    private Target target;
+    private Object model;
+    private Object list;
+    private Object table;
+
+    @Setup
+    public void setup() {
+        target = Target.load();
+        model = target.train(Target.corpus("shakespeareinlove.txt"), 1, 20);
+        target.setSampler(model, sampler);
+        list = target.newList(fanOut);
+        table = target.newSamplingTable(list);
+    }
+
+    @Benchmark
+    public char getRandomCharList() {
+        return target.getRandomChar(model, list);
+    }
+
+    @Benchmark
+    public char sampleTable() {
+        return target.sample(model, table);
+    }
+}
@@ -0,0 +1,62 @@
+package lmbench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures the List operations used by training and generation, per list size.
+ *  Every operation targets the last character of the list, which is the worst case.
+ *  The sumCounts benchmarks compare the ways to visit every element of a list. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int size;
+
+    private Target target;
+    private Object list;
+    private char last;
+
+    @Setup
+    public void setup() {
+        target = Target.load();
+        list = target.newList(size);
+        // newList adds the characters '!', '"', ... with update, so the first one is last
+        last = '!';
+    }
+
+    @Benchmark
+    public Object update() {
+        target.update(list, last);
+        return list;
+    }
+
+    @Benchmark
+    public Object get() {
+        return target.get(list, size - 1);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return target.indexOf(list, last);
+    }
+
+    @Benchmark
+    public int sumCountsByIndex() {
+        return target.sumCountsByIndex(list);
+    }
+
+    @Benchmark
+    public int sumCountsByIterator() {
+        return target.sumCountsByIterator(list);
+    }
+
+    @Benchmark
+    public int sumCountsByForEach() {
+        return target.sumCountsByForEach(list);
+    }
+}
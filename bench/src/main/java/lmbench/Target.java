@@ -0,0 +1,65 @@
+package lmbench;
+
+/** The operations of the language model that the benchmarks measure.
+ *  The model classes are in the default package, which code in a named package (as JMH requires
+ *  for benchmarks) cannot refer to; BenchTarget, in the default package, implements this interface
+ *  by calling them directly. Models, lists and tables are passed around as opaque objects. */
+public interface Target {
+
+    /** Returns a model with the given window length and seed, trained on the given file. */
+    Object train(String fileName, int windowLength, int seed);
+
+    /** Returns a model like train does, trained with trainParallel. */
+    Object trainParallel(String fileName, int windowLength, int seed);
+
+    /** Sets the sampler of the given model: "linear", "binary" or "alias". */
+    void setSampler(Object model, String sampler);
+
+    /** Returns a text generated by the given model. */
+    String generate(Object model, String initialText, int textLength);
+
+    /** Returns a List of fanOut distinct characters with skewed counts, with probabilities calculated. */
+    Object newList(int fanOut);
+
+    /** Returns the sampling table compiled from the given List. */
+    Object newSamplingTable(Object list);
+
+    /** Returns model.getRandomChar(list). */
+    char getRandomChar(Object model, Object list);
+
+    /** Returns a character drawn from the given sampling table with the sampler of the given model. */
+    char sample(Object model, Object table);
+
+    /** Calls list.update(chr). */
+    void update(Object list, char chr);
+
+    /** Returns list.get(index). */
+    Object get(Object list, int index);
+
+    /** Returns list.indexOf(chr). */
+    int indexOf(Object list, char chr);
+
+    /** Returns the sum of the counts of the given List, read with list.get(i). */
+    int sumCountsByIndex(Object list);
+
+    /** Returns the sum of the counts of the given List, read with its iterator. */
+    int sumCountsByIterator(Object list);
+
+    /** Returns the sum of the counts of the given List, read with list.forEachCount. */
+    int sumCountsByForEach(Object list);
+
+    /** Returns the BenchTarget. */
+    static Target load() {
+        try {
+            return (Target) Class.forName("BenchTarget").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchTarget not found", e);
+        }
+    }
+
+    /** Returns the path of the given bundled corpus, in the directory given by the
+     *  lm.corpus.dir system property (by default, the working directory). */
+    static String corpus(String name) {
+        return System.getProperty("lm.corpus.dir", ".") + "/" + name;
+    }
+}
@@ -0,0 +1,39 @@
+package lmbench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures training on the bundled corpora, for window lengths 1 to 10. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainBenchmark {
+
+    @Param({"originofspecies.txt", "shakespeareinlove.txt"})
+    public String corpus;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10"})
+    public int windowLength;
+
+    private Target target;
+    private String fileName;
+
+    @Setup
+    public void setup() {
+        target = Target.load();
+        fileName = Target.corpus(corpus);
+    }
+
+    @Benchmark
+    public Object train() {
+        return target.train(fileName, windowLength, 20);
+    }
+
+    @Benchmark
+    public Object trainParallel() {
+        return target.trainParallel(fileName, windowLength, 20);
+    }
+}